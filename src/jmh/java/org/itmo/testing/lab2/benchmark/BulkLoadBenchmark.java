@@ -0,0 +1,75 @@
+package org.itmo.testing.lab2.benchmark;
+
+import org.itmo.testing.lab2.service.BinarySessionWriter;
+import org.itmo.testing.lab2.service.SessionBulkLoader;
+import org.itmo.testing.lab2.service.UserAnalyticsService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время загрузки файла с {@link #sessions} сессиями в пустой сервис.
+ * Сессий в минуту = sessions * 60 000 / результат в миллисекундах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BulkLoadBenchmark {
+
+    @Param({"10000000"})
+    public int sessions;
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"CSV", "BINARY"})
+    public SessionBulkLoader.Format format;
+
+    private Path file;
+    private UserAnalyticsService service;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        if (format == SessionBulkLoader.Format.CSV) {
+            file = Files.createTempFile("sessions", ".csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for (int i = 0; i < sessions; i++) {
+                    LocalDateTime login = start.plusSeconds(i);
+                    writer.write("user" + (i % users) + "," + login + "," + login.plusMinutes(30) + "\n");
+                }
+            }
+        } else {
+            file = Files.createTempFile("sessions", ".bin");
+            try (BinarySessionWriter writer = new BinarySessionWriter(file)) {
+                for (int i = 0; i < sessions; i++) {
+                    LocalDateTime login = start.plusSeconds(i);
+                    writer.write("user" + (i % users), login, login.plusMinutes(30));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createService() {
+        service = new UserAnalyticsService();
+    }
+
+    @Benchmark
+    public SessionBulkLoader.Result load() throws IOException {
+        return new SessionBulkLoader(service, Runtime.getRuntime().availableProcessors())
+                .load(file, format, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,47 @@
+package org.itmo.testing.lab2.benchmark;
+
+import org.itmo.testing.lab2.service.SessionDeduplicator;
+import org.itmo.testing.lab2.service.UserAnalyticsService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование полного обхода по числу потоков выделенного пула.
+ * Порог 0 заставляет обход всегда идти через ForkJoinPool, parallelism = 1 — базовая линия.
+ * Кэш findInactiveUsers выключен, чтобы каждый вызов выполнял обход.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FindInactiveUsersBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    @Param({"1000000"})
+    public int users;
+
+    private UserAnalyticsService service;
+
+    @Setup
+    public void setUp() {
+        service = new UserAnalyticsService(parallelism, 0,
+                SessionDeduplicator.forExpectedInserts(users, 0.01, Duration.ofMinutes(10)), 0);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < users; i++) {
+            String userId = "user" + i;
+            service.registerUser(userId, userId);
+            LocalDateTime logout = now.minusDays(i % 60);
+            service.recordSession(userId, logout.minusHours(1), logout);
+        }
+    }
+
+    @Benchmark
+    public List<String> findInactiveUsers() {
+        return service.findInactiveUsers(30);
+    }
+}
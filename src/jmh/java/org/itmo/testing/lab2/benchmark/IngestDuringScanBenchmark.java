@@ -0,0 +1,81 @@
+package org.itmo.testing.lab2.benchmark;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность записи сессий без обходов и при параллельно идущих findInactiveUsers.
+ * Обходы читают снимок журналов и не должны снижать результат группы ingest.
+ * Группа ingestWithScans читает закэшированный результат, а ingestWithCacheRebuilds
+ * каждый раз запрашивает другое число дней, поэтому записи кэша строятся заново.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IngestDuringScanBenchmark {
+
+    private static final int USERS = 200_000;
+
+    private UserAnalyticsService service;
+    private LocalDateTime start;
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong scanDays = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new UserAnalyticsService();
+        start = LocalDateTime.now().minusYears(1);
+        for (int i = 0; i < USERS; i++) {
+            String userId = "user" + i;
+            service.registerUser(userId, userId);
+            service.recordSession(userId, start, start.plusMinutes(30));
+        }
+        counter.set(0);
+    }
+
+    private void ingest() {
+        long n = counter.incrementAndGet();
+        LocalDateTime login = start.plusSeconds(n);
+        service.recordSession("user" + (n % USERS), login, login.plusMinutes(30));
+    }
+
+    @Benchmark
+    @Group("ingestOnly")
+    @GroupThreads(4)
+    public void ingestAlone() {
+        ingest();
+    }
+
+    @Benchmark
+    @Group("ingestWithScans")
+    @GroupThreads(4)
+    public void ingestDuringScans() {
+        ingest();
+    }
+
+    @Benchmark
+    @Group("ingestWithScans")
+    @GroupThreads(1)
+    public void scan(Blackhole blackhole) {
+        blackhole.consume(service.findInactiveUsers(30));
+    }
+
+    @Benchmark
+    @Group("ingestWithCacheRebuilds")
+    @GroupThreads(4)
+    public void ingestDuringCacheRebuilds() {
+        ingest();
+    }
+
+    @Benchmark
+    @Group("ingestWithCacheRebuilds")
+    @GroupThreads(1)
+    public void scanRebuildingCache(Blackhole blackhole) {
+        blackhole.consume(service.findInactiveUsers(30 + (int) (scanDays.incrementAndGet() % 256)));
+    }
+}
@@ -0,0 +1,54 @@
+package org.itmo.testing.lab2.benchmark;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы дедупликации на запись сессии:
+ * без проверки (пакетная запись), с проверкой по содержимому и по ключу идемпотентности.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionIngestBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"none", "content", "key"})
+    public String dedup;
+
+    private UserAnalyticsService service;
+    private String[] userIds;
+    private LocalDateTime start;
+    private long counter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new UserAnalyticsService();
+        userIds = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = "user" + i;
+            service.registerUser(userIds[i], userIds[i]);
+        }
+        start = LocalDateTime.now().minusYears(1);
+        counter = 0;
+    }
+
+    @Benchmark
+    public boolean recordSession() {
+        long n = counter++;
+        String userId = userIds[(int) (n % USERS)];
+        LocalDateTime login = start.plusSeconds(n);
+        LocalDateTime logout = login.plusMinutes(30);
+        return switch (dedup) {
+            case "content" -> service.recordSession(userId, login, logout, null);
+            case "key" -> service.recordSession(userId, login, logout, Long.toString(n));
+            default -> service.bulkRecordSessions(userId,
+                    List.of(new UserAnalyticsService.Session(login, logout)), false);
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package org.itmo.testing.lab2.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Время от запуска JVM с Main до первого успешного ответа /totalActivity:
+ * без архива (базовая линия) и с AppCDS-архивом.
+ * Аргументы: путь к java, classpath приложения, путь к архиву, число прогонов.
+ */
+public class StartupBenchmark {
+
+    private static final int PORT = 7101;
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    public static void main(String[] args) throws Exception {
+        String java = args[0];
+        String classpath = args[1];
+        String archive = args[2];
+        int runs = Integer.parseInt(args[3]);
+
+        long[] baseline = measure(runs, List.of(java, "-cp", classpath));
+        long[] appCds = measure(runs, List.of(java, "-XX:SharedArchiveFile=" + archive, "-cp", classpath));
+
+        report("baseline", baseline);
+        report("appcds", appCds);
+    }
+
+    private static long[] measure(int runs, List<String> javaCommand) throws Exception {
+        long[] result = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            List<String> command = new ArrayList<>(javaCommand);
+            command.add("-Dlab2.port=" + PORT);
+            command.add("org.itmo.testing.lab2.Main");
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            try {
+                awaitFirstTotalActivity(start);
+                result[i] = System.nanoTime() - start;
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        return result;
+    }
+
+    private static void awaitFirstTotalActivity(long start) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        String base = "http://localhost:" + PORT;
+        LocalDateTime now = LocalDateTime.now();
+        List<HttpRequest> requests = List.of(
+                HttpRequest.newBuilder(URI.create(base + "/register?userId=probe&userName=probe"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpRequest.newBuilder(URI.create(base + "/recordSession?userId=probe&loginTime="
+                                + now.minusHours(1) + "&logoutTime=" + now))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpRequest.newBuilder(URI.create(base + "/totalActivity?userId=probe")).GET().build()
+        );
+        for (HttpRequest request : requests) {
+            while (true) {
+                if (System.nanoTime() - start > TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("Application did not start in " + TIMEOUT);
+                }
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // Сервер ещё не слушает порт
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void report(String mode, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-8s median %6.1f ms, min %6.1f ms, max %6.1f ms (%d runs)%n", mode,
+                sorted[sorted.length / 2] / 1e6, sorted[0] / 1e6, sorted[sorted.length - 1] / 1e6, sorted.length);
+    }
+}
@@ -1,10 +1,33 @@
 package org.itmo.testing.lab2;
 
 import org.itmo.testing.lab2.controller.UserAnalyticsController;
+import org.itmo.testing.lab2.service.SessionBulkLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
 
 public class Main {
-    public static void main(String[] args) {
-        var app = UserAnalyticsController.createApp();
-        app.start(7001);
+    private static final Logger LOG = LoggerFactory.getLogger(Main.class);
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.getInteger("lab2.port", 7001);
+        var service = UserAnalyticsController.createService();
+        // Офлайн-загрузка истории до начала приёма запросов, например при пересборке узла
+        String preload = System.getProperty("lab2.bulk.preload");
+        if (preload != null) {
+            Path file = Path.of(preload);
+            var result = new SessionBulkLoader(service, Runtime.getRuntime().availableProcessors())
+                    .load(file, SessionBulkLoader.Format.fromFileName(file.getFileName().toString()), true);
+            LOG.info("Preloaded sessions from {}: {}", file, result);
+        }
+        var app = UserAnalyticsController.createApp(service);
+        app.start(port);
+        // Тренировочный прогон для AppCDS: прогреваем все маршруты и завершаемся,
+        // чтобы JVM выгрузила архив загруженных классов
+        if (Boolean.getBoolean("lab2.cds.training")) {
+            TrainingRun.exercise(port);
+            app.stop();
+        }
     }
 }
@@ -0,0 +1,65 @@
+package org.itmo.testing.lab2;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Обходит все маршруты приложения, чтобы при сборке AppCDS-архива
+ * в него попали классы, загружаемые при обработке запросов.
+ */
+public class TrainingRun {
+
+    private TrainingRun() {
+    }
+
+    public static void exercise(int port) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        String base = "http://localhost:" + port;
+        LocalDateTime now = LocalDateTime.now();
+
+        send(client, post(base + "/register?userId=training&userName=training"));
+        // Подписчик SSE получает событие о следующих записях, что загружает классы рассылки
+        HttpResponse<Stream<String>> events = client.send(get(base + "/events?userId=training"),
+                HttpResponse.BodyHandlers.ofLines());
+        CompletableFuture<Void> firstEvent = CompletableFuture.runAsync(() ->
+                events.body().filter(line -> line.startsWith("event:")).findFirst());
+        send(client, post(base + "/recordSession?userId=training&loginTime=" + now.minusHours(1)
+                + "&logoutTime=" + now));
+        send(client, get(base + "/totalActivity?userId=training"));
+        send(client, get(base + "/inactiveUsers?days=30"));
+        send(client, get(base + "/monthlyActivity?userId=training&month=" + YearMonth.from(now)));
+        send(client, get(base + "/sessionPercentiles?userId=training"));
+        send(client, get(base + "/globalSessionPercentiles"));
+        send(client, post(base + "/recordSession?userId=training&loginTime=" + now.minusHours(3)
+                + "&logoutTime=" + now.minusHours(2)));
+        try {
+            firstEvent.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Архив без классов рассылки всё равно пригоден
+        } finally {
+            events.body().close();
+        }
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).GET().build();
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+}
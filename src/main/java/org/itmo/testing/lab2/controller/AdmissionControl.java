@@ -0,0 +1,168 @@
+package org.itmo.testing.lab2.controller;
+
+import io.javalin.http.Handler;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение нагрузки по классам маршрутов: у каждого класса своё число одновременных запросов
+ * и ограниченная очередь ожидания. Запросы сверх очереди или не дождавшиеся разрешения
+ * сразу получают 503 с Retry-After. Дорогие обходы отклоняются первыми,
+ * пока в очереди ждут точечные чтения.
+ * Ожидающий запрос занимает поток Jetty, поэтому пул должен вмещать все выполняющиеся
+ * и ожидающие запросы (см. {@link #checkThreadPool}), иначе поток одного класса исчерпает его раньше очереди.
+ */
+public class AdmissionControl {
+
+    public enum RouteClass {
+        INGEST, POINT_READ, SCAN
+    }
+
+    public record Limits(int maxConcurrent, int maxQueued, long maxWaitMillis) {
+        public Limits {
+            if (maxConcurrent < 1 || maxQueued < 0 || maxWaitMillis < 0) {
+                throw new IllegalArgumentException("Invalid admission limits");
+            }
+        }
+    }
+
+    private final Map<RouteClass, Gate> gates = new EnumMap<>(RouteClass.class);
+    private final int retryAfterSeconds;
+
+    public AdmissionControl(Map<RouteClass, Limits> limits, int retryAfterSeconds) {
+        for (RouteClass routeClass : RouteClass.values()) {
+            Limits routeLimits = limits.get(routeClass);
+            if (routeLimits == null) {
+                throw new IllegalArgumentException("No admission limits for " + routeClass);
+            }
+            gates.put(routeClass, new Gate(routeLimits));
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Лимиты из системных свойств вида lab2.admission.scan.concurrency, .queue и .waitMillis.
+     */
+    public static AdmissionControl fromSystemProperties() {
+        Map<RouteClass, Limits> limits = new EnumMap<>(RouteClass.class);
+        limits.put(RouteClass.INGEST, limitsFromSystemProperties("ingest", 64, 256, 100));
+        limits.put(RouteClass.POINT_READ, limitsFromSystemProperties("pointRead", 64, 512, 100));
+        limits.put(RouteClass.SCAN, limitsFromSystemProperties("scan", 4, 16, 1000));
+        return new AdmissionControl(limits, Integer.getInteger("lab2.admission.retryAfterSeconds", 1));
+    }
+
+    private static Limits limitsFromSystemProperties(String name, int concurrent, int queued, long waitMillis) {
+        String prefix = "lab2.admission." + name + ".";
+        return new Limits(
+                Integer.getInteger(prefix + "concurrency", concurrent),
+                Integer.getInteger(prefix + "queue", queued),
+                Long.getLong(prefix + "waitMillis", waitMillis));
+    }
+
+    /**
+     * Сколько потоков Jetty могут одновременно занять ограничиваемые маршруты: выполняющиеся запросы и очереди.
+     */
+    public int maxOccupiedThreads() {
+        int threads = 0;
+        for (Gate gate : gates.values()) {
+            threads += gate.limits.maxConcurrent() + gate.limits.maxQueued();
+        }
+        return threads;
+    }
+
+    /**
+     * Проверяет, что пул из {@code maxThreads} потоков вмещает все ограничиваемые запросы
+     * и ещё {@code reservedThreads} потоков на приём соединений и неограничиваемые маршруты.
+     */
+    public void checkThreadPool(int maxThreads, int reservedThreads) {
+        int required = maxOccupiedThreads() + reservedThreads;
+        if (maxThreads < required) {
+            throw new IllegalArgumentException("Thread pool of " + maxThreads
+                    + " threads is smaller than admission limits require: " + required);
+        }
+    }
+
+    public Handler guard(RouteClass routeClass, Handler handler) {
+        return ctx -> {
+            if (!tryEnter(routeClass)) {
+                ctx.header("Retry-After", String.valueOf(retryAfterSeconds));
+                ctx.status(503).result("Server overloaded");
+                return;
+            }
+            try {
+                handler.handle(ctx);
+            } finally {
+                exit(routeClass);
+            }
+        };
+    }
+
+    public boolean tryEnter(RouteClass routeClass) throws InterruptedException {
+        Gate gate = gates.get(routeClass);
+        if (routeClass == RouteClass.SCAN && gates.get(RouteClass.POINT_READ).waiting.get() > 0) {
+            gate.rejected.increment();
+            return false;
+        }
+        return gate.tryEnter();
+    }
+
+    public void exit(RouteClass routeClass) {
+        gates.get(routeClass).permits.release();
+    }
+
+    public Map<String, Map<String, Long>> metrics() {
+        Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+        gates.forEach((routeClass, gate) -> {
+            Map<String, Long> gateMetrics = new LinkedHashMap<>();
+            gateMetrics.put("maxConcurrent", (long) gate.limits.maxConcurrent());
+            gateMetrics.put("maxQueued", (long) gate.limits.maxQueued());
+            gateMetrics.put("inFlight", (long) (gate.limits.maxConcurrent() - gate.permits.availablePermits()));
+            gateMetrics.put("queued", (long) gate.waiting.get());
+            gateMetrics.put("admitted", gate.admitted.sum());
+            gateMetrics.put("rejected", gate.rejected.sum());
+            metrics.put(routeClass.name(), gateMetrics);
+        });
+        return metrics;
+    }
+
+    private static class Gate {
+        private final Limits limits;
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Gate(Limits limits) {
+            this.limits = limits;
+            this.permits = new Semaphore(limits.maxConcurrent(), true);
+        }
+
+        boolean tryEnter() throws InterruptedException {
+            if (permits.tryAcquire()) {
+                admitted.increment();
+                return true;
+            }
+            if (waiting.incrementAndGet() > limits.maxQueued()) {
+                waiting.decrementAndGet();
+                rejected.increment();
+                return false;
+            }
+            try {
+                if (permits.tryAcquire(limits.maxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                    admitted.increment();
+                    return true;
+                }
+                rejected.increment();
+                return false;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+}
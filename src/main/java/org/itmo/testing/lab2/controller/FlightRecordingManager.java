@@ -0,0 +1,81 @@
+package org.itmo.testing.lab2.controller;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.itmo.testing.lab2.service.ServiceOperationEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Запуск и остановка ограниченной записи JFR по запросу администратора.
+ * Одновременно идёт не больше одной записи; её размер, возраст данных и длительность ограничены,
+ * при остановке запись сохраняется в каталог lab2.jfr.dir.
+ */
+public class FlightRecordingManager {
+
+    private final Path directory;
+    private Recording recording;
+
+    public FlightRecordingManager(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Запускает запись; все ограничения должны быть положительными, иначе IllegalArgumentException.
+     */
+    public synchronized String start(Duration maxDuration, Duration maxAge, long maxSizeMb)
+            throws IOException, ParseException {
+        if (maxDuration.isNegative() || maxDuration.isZero() || maxAge.isNegative() || maxAge.isZero()
+                || maxSizeMb < 1 || maxSizeMb > Long.MAX_VALUE >> 20) {
+            throw new IllegalArgumentException("Recording limits must be positive");
+        }
+        if (recording != null) {
+            throw new IllegalStateException("Recording is already running");
+        }
+        Recording newRecording = new Recording(Configuration.getConfiguration("profile"));
+        boolean started = false;
+        try {
+            newRecording.setName("lab2-" + System.currentTimeMillis());
+            newRecording.enable(ServiceOperationEvent.class);
+            newRecording.enable(HttpRouteEvent.class);
+            newRecording.setDuration(maxDuration);
+            newRecording.setMaxAge(maxAge);
+            newRecording.setMaxSize(maxSizeMb << 20);
+            newRecording.setToDisk(true);
+            newRecording.start();
+            started = true;
+        } finally {
+            if (!started) {
+                newRecording.close();
+            }
+        }
+        recording = newRecording;
+        return newRecording.getName();
+    }
+
+    /**
+     * Останавливает запись (если она ещё не завершилась по длительности) и сохраняет её на диск.
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No recording is running");
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            Files.createDirectories(directory);
+            Path file = directory.resolve(recording.getName() + ".jfr");
+            recording.dump(file);
+            return file;
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.itmo.testing.lab2.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR для обработки HTTP-запроса. По умолчанию выключено,
+ * и пока оно выключено, объект события на запрос не создаётся.
+ */
+@Name("org.itmo.testing.lab2.HttpRoute")
+@Label("HTTP Route")
+@Category({"Lab2", "HTTP"})
+@Description("Handling of an HTTP request by UserAnalyticsController")
+@Enabled(false)
+@StackTrace(false)
+public class HttpRouteEvent extends Event {
+
+    static final String ATTRIBUTE = HttpRouteEvent.class.getName();
+    static final EventType TYPE = EventType.getEventType(HttpRouteEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,41 @@
+package org.itmo.testing.lab2.controller;
+
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU-кэш сериализованных ответов /monthlyActivity.
+ * Запись действительна только для той версии месяца, с которой она была сохранена.
+ */
+public class MonthlyActivityCache {
+
+    private final Map<Key, Entry> entries;
+
+    public MonthlyActivityCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized String get(String userId, YearMonth month, long version) {
+        Entry entry = entries.get(new Key(userId, month));
+        if (entry == null || entry.version() != version) {
+            return null;
+        }
+        return entry.body();
+    }
+
+    public synchronized void put(String userId, YearMonth month, long version, String body) {
+        entries.put(new Key(userId, month), new Entry(version, body));
+    }
+
+    private record Key(String userId, YearMonth month) {
+    }
+
+    private record Entry(long version, String body) {
+    }
+}
@@ -1,20 +1,78 @@
 package org.itmo.testing.lab2.controller;
 
 import io.javalin.Javalin;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.itmo.testing.lab2.controller.AdmissionControl.RouteClass;
+import org.itmo.testing.lab2.service.SessionBulkLoader;
+import org.itmo.testing.lab2.service.SessionDeduplicator;
 import org.itmo.testing.lab2.service.UserAnalyticsService;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class UserAnalyticsController {
 
+    private static final int MONTHLY_ACTIVITY_CACHE_SIZE = 10_000;
+    // Потоки сверх лимитов допуска: приём соединений, селекторы Jetty и административные маршруты
+    private static final int RESERVED_JETTY_THREADS = 32;
+    private static final int MIN_JETTY_THREADS = 8;
+    private static final int JETTY_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    public static UserAnalyticsService createService() {
+        return new UserAnalyticsService(
+                Integer.getInteger("lab2.scan.parallelism", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("lab2.scan.parallelThreshold", UserAnalyticsService.DEFAULT_PARALLEL_SCAN_THRESHOLD),
+                SessionDeduplicator.fromSystemProperties());
+    }
+
     public static Javalin createApp() {
-        UserAnalyticsService service = new UserAnalyticsService();
-        Javalin app = Javalin.create();
+        return createApp(createService());
+    }
+
+    public static Javalin createApp(UserAnalyticsService service) {
+        MonthlyActivityCache monthlyActivityCache = new MonthlyActivityCache(MONTHLY_ACTIVITY_CACHE_SIZE);
+        // Версии месяцев живут только в памяти процесса, поэтому ETag привязан к экземпляру приложения
+        String etagPrefix = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        AdmissionControl admission = AdmissionControl.fromSystemProperties();
+        UserEventHub eventHub = new UserEventHub();
+        service.addActivityListener(eventHub);
+        int maxThreads = Integer.getInteger("lab2.jetty.maxThreads",
+                admission.maxOccupiedThreads() + RESERVED_JETTY_THREADS);
+        admission.checkThreadPool(maxThreads, RESERVED_JETTY_THREADS);
+        Javalin app = Javalin.create(config -> {
+            QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, MIN_JETTY_THREADS, JETTY_IDLE_TIMEOUT_MILLIS);
+            threadPool.setName("JettyServerThreadPool");
+            config.jetty.threadPool = threadPool;
+        });
+
+        app.before(ctx -> {
+            if (HttpRouteEvent.TYPE.isEnabled()) {
+                HttpRouteEvent event = new HttpRouteEvent();
+                event.begin();
+                ctx.attribute(HttpRouteEvent.ATTRIBUTE, event);
+            }
+        });
+        app.after(ctx -> {
+            HttpRouteEvent event = ctx.attribute(HttpRouteEvent.ATTRIBUTE);
+            if (event != null && event.shouldCommit()) {
+                event.method = ctx.method().name();
+                event.path = ctx.path();
+                event.status = ctx.statusCode();
+                event.commit();
+            }
+        });
 
-        app.post("/register", ctx -> {
+        app.post("/register", admission.guard(RouteClass.INGEST, ctx -> {
             String userId = ctx.queryParam("userId");
             String userName = ctx.queryParam("userName");
             if (userId == null || userName == null) {
@@ -23,9 +81,9 @@ public class UserAnalyticsController {
             }
             boolean success = service.registerUser(userId, userName);
             ctx.result("User registered: " + success);
-        });
+        }));
 
-        app.post("/recordSession", ctx -> {
+        app.post("/recordSession", admission.guard(RouteClass.INGEST, ctx -> {
             String userId = ctx.queryParam("userId");
             String loginTime = ctx.queryParam("loginTime");
             String logoutTime = ctx.queryParam("logoutTime");
@@ -36,14 +94,15 @@ public class UserAnalyticsController {
             try {
                 LocalDateTime login = LocalDateTime.parse(loginTime);
                 LocalDateTime logout = LocalDateTime.parse(logoutTime);
-                service.recordSession(userId, login, logout);
+                // Повтор уже записанной сессии получает тот же ответ, чтобы ретраи коллекторов были безопасны
+                service.recordSession(userId, login, logout, ctx.queryParam("idempotencyKey"));
                 ctx.result("Session recorded");
             } catch (Exception e) {
                 ctx.status(400).result("Invalid data: " + e.getMessage());
             }
-        });
+        }));
 
-        app.get("/totalActivity", ctx -> {
+        app.get("/totalActivity", admission.guard(RouteClass.POINT_READ, ctx -> {
             String userId = ctx.queryParam("userId");
             if (userId == null) {
                 ctx.status(400).result("Missing userId");
@@ -51,9 +110,9 @@ public class UserAnalyticsController {
             }
             long minutes = service.getTotalActivityTime(userId);
             ctx.result("Total activity: " + minutes + " minutes");
-        });
+        }));
 
-        app.get("/inactiveUsers", ctx -> {
+        app.get("/inactiveUsers", admission.guard(RouteClass.SCAN, ctx -> {
             String daysParam = ctx.queryParam("days");
             if (daysParam == null) {
                 ctx.status(400).result("Missing days parameter");
@@ -66,9 +125,9 @@ public class UserAnalyticsController {
             } catch (NumberFormatException e) {
                 ctx.status(400).result("Invalid number format for days");
             }
-        });
+        }));
 
-        app.get("/monthlyActivity", ctx -> {
+        app.get("/monthlyActivity", admission.guard(RouteClass.POINT_READ, ctx -> {
             String userId = ctx.queryParam("userId");
             String monthParam = ctx.queryParam("month");
             if (userId == null || monthParam == null) {
@@ -77,13 +136,133 @@ public class UserAnalyticsController {
             }
             try {
                 YearMonth month = YearMonth.parse(monthParam);
-                Map<String, Long> activity = service.getMonthlyActivityMetric(userId, month);
-                ctx.json(activity);
+                long version = service.getMonthlyActivityVersion(userId, month);
+                String etag = "\"" + etagPrefix + "-" + version + "\"";
+                ctx.header(Header.ETAG, etag);
+                if (matchesEtag(ctx.header(Header.IF_NONE_MATCH), etag)) {
+                    ctx.status(304);
+                    return;
+                }
+                String body = monthlyActivityCache.get(userId, month, version);
+                if (body == null) {
+                    Map<String, Long> activity = service.getMonthlyActivityMetric(userId, month);
+                    body = ctx.jsonMapper().toJsonString(activity, Map.class);
+                    monthlyActivityCache.put(userId, month, version, body);
+                }
+                ctx.contentType(ContentType.APPLICATION_JSON).result(body);
+            } catch (Exception e) {
+                ctx.status(400).result("Invalid data: " + e.getMessage());
+            }
+        }));
+
+        app.get("/sessionPercentiles", admission.guard(RouteClass.POINT_READ, ctx -> {
+            String userId = ctx.queryParam("userId");
+            if (userId == null) {
+                ctx.status(400).result("Missing userId");
+                return;
+            }
+            try {
+                ctx.json(service.getSessionDurationPercentiles(userId));
             } catch (Exception e) {
                 ctx.status(400).result("Invalid data: " + e.getMessage());
             }
+        }));
+
+        app.get("/globalSessionPercentiles", admission.guard(RouteClass.POINT_READ,
+                ctx -> ctx.json(service.getGlobalSessionDurationPercentiles())));
+
+        app.sse("/events", client -> {
+            client.keepAlive();
+            eventHub.subscribe(client, client.ctx().queryParams("userId"));
+        });
+
+        app.get("/admin/admission", ctx -> ctx.json(admission.metrics()));
+
+        // Запись профиля доступна только при заданном каталоге lab2.jfr.dir; без него она выключена
+        String jfrDirectory = System.getProperty("lab2.jfr.dir");
+        FlightRecordingManager recordingManager = jfrDirectory == null
+                ? null
+                : new FlightRecordingManager(Path.of(jfrDirectory));
+        app.post("/admin/profiling/start", ctx -> {
+            if (recordingManager == null) {
+                ctx.status(403).result("Profiling is disabled");
+                return;
+            }
+            try {
+                String name = recordingManager.start(
+                        Duration.ofSeconds(longQueryParam(ctx, "durationSeconds", 300)),
+                        Duration.ofSeconds(longQueryParam(ctx, "maxAgeSeconds", 300)),
+                        longQueryParam(ctx, "maxSizeMb", 100));
+                ctx.result("Recording started: " + name);
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Invalid number format");
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result("Invalid data: " + e.getMessage());
+            } catch (IllegalStateException e) {
+                ctx.status(409).result(e.getMessage());
+            }
+        });
+        app.post("/admin/profiling/stop", ctx -> {
+            if (recordingManager == null) {
+                ctx.status(403).result("Profiling is disabled");
+                return;
+            }
+            try {
+                ctx.result("Recording saved: " + recordingManager.stop());
+            } catch (IllegalStateException e) {
+                ctx.status(409).result(e.getMessage());
+            }
+        });
+
+        // Загружать можно только файлы из каталога lab2.bulk.dir; без него загрузка выключена
+        String bulkDirectory = System.getProperty("lab2.bulk.dir");
+        SessionBulkLoader bulkLoader = new SessionBulkLoader(service, Runtime.getRuntime().availableProcessors());
+        app.post("/admin/bulkLoad", ctx -> {
+            if (bulkDirectory == null) {
+                ctx.status(403).result("Bulk loading is disabled");
+                return;
+            }
+            String fileParam = ctx.queryParam("file");
+            if (fileParam == null) {
+                ctx.status(400).result("Missing parameters");
+                return;
+            }
+            try {
+                Path base = Path.of(bulkDirectory).toAbsolutePath().normalize();
+                Path file = base.resolve(fileParam).normalize();
+                if (!file.startsWith(base)) {
+                    ctx.status(400).result("Invalid data: file is outside of the bulk directory");
+                    return;
+                }
+                String formatParam = ctx.queryParam("format");
+                SessionBulkLoader.Format format = formatParam == null
+                        ? SessionBulkLoader.Format.fromFileName(file.getFileName().toString())
+                        : SessionBulkLoader.Format.valueOf(formatParam.toUpperCase(Locale.ROOT));
+                boolean registerMissingUsers = Boolean.parseBoolean(ctx.queryParam("registerMissingUsers"));
+                ctx.json(bulkLoader.load(file, format, registerMissingUsers));
+            } catch (IOException | IllegalArgumentException e) {
+                ctx.status(400).result("Invalid data: " + e.getMessage());
+            }
         });
         return app;
     }
+
+    private static long longQueryParam(Context ctx, String name, long defaultValue) {
+        String value = ctx.queryParam(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
 
@@ -0,0 +1,117 @@
+package org.itmo.testing.lab2.controller;
+
+import io.javalin.http.sse.SseClient;
+import org.itmo.testing.lab2.service.ActivityListener;
+import org.itmo.testing.lab2.service.UserStatusService;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Рассылает подписчикам SSE изменения активности пользователей.
+ * Изменения копятся у каждого подписчика по userId и сливаются, пока предыдущая отправка не завершена,
+ * поэтому медленный клиент получает только последнее состояние и не задерживает остальных.
+ */
+public class UserEventHub implements ActivityListener {
+
+    public static final String STATUS_EVENT = "status";
+    public static final String ACTIVITY_EVENT = "activity";
+
+    public record ActivityEvent(String userId, long totalMinutes, String status) {
+    }
+
+    private final Map<String, Set<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+    private final Set<Subscriber> allUsersSubscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Подписывает клиента на изменения указанных пользователей; пустой набор — на всех пользователей.
+     */
+    public void subscribe(SseClient client, Collection<String> userIds) {
+        Subscriber subscriber = new Subscriber(client);
+        if (userIds.isEmpty()) {
+            allUsersSubscribers.add(subscriber);
+            client.onClose(() -> allUsersSubscribers.remove(subscriber));
+            return;
+        }
+        for (String userId : userIds) {
+            subscribersByUser.compute(userId, (k, subscribers) -> {
+                Set<Subscriber> result = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+                result.add(subscriber);
+                return result;
+            });
+        }
+        client.onClose(() -> {
+            for (String userId : userIds) {
+                subscribersByUser.computeIfPresent(userId, (k, subscribers) -> {
+                    subscribers.remove(subscriber);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onTotalActivityChanged(String userId, long previousMinutes, long totalMinutes) {
+        Set<Subscriber> subscribers = subscribersByUser.get(userId);
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(userId, previousMinutes, totalMinutes);
+            }
+        }
+        for (Subscriber subscriber : allUsersSubscribers) {
+            subscriber.offer(userId, previousMinutes, totalMinutes);
+        }
+    }
+
+    private record Change(long previousMinutes, long totalMinutes) {
+    }
+
+    private class Subscriber {
+        private final SseClient client;
+        private final Map<String, Change> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseClient client) {
+            this.client = client;
+        }
+
+        void offer(String userId, long previousMinutes, long totalMinutes) {
+            // Неотправленное изменение сохраняет исходное значение, чтобы смена уровня не потерялась при слиянии
+            pending.merge(userId, new Change(previousMinutes, totalMinutes),
+                    (old, latest) -> new Change(old.previousMinutes(), latest.totalMinutes()));
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Iterator<Map.Entry<String, Change>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && !client.terminated()) {
+                    Map.Entry<String, Change> entry = iterator.next();
+                    Change change = entry.getValue();
+                    if (!pending.remove(entry.getKey(), change)) {
+                        continue;
+                    }
+                    String status = UserStatusService.statusFor(change.totalMinutes());
+                    String event = Objects.equals(status, UserStatusService.statusFor(change.previousMinutes()))
+                            ? ACTIVITY_EVENT : STATUS_EVENT;
+                    try {
+                        client.sendEvent(event, new ActivityEvent(entry.getKey(), change.totalMinutes(), status));
+                    } catch (RuntimeException e) {
+                        client.close();
+                    }
+                }
+                draining.set(false);
+            } while (!pending.isEmpty() && !client.terminated() && draining.compareAndSet(false, true));
+        }
+    }
+}
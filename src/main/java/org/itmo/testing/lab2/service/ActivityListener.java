@@ -0,0 +1,10 @@
+package org.itmo.testing.lab2.service;
+
+/**
+ * Получает изменения суммарной активности пользователя при записи сессий.
+ * Вызывается синхронно на пути записи, поэтому реализация должна быть быстрой.
+ */
+public interface ActivityListener {
+
+    void onTotalActivityChanged(String userId, long previousMinutes, long totalMinutes);
+}
@@ -0,0 +1,71 @@
+package org.itmo.testing.lab2.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Пишет сессии в бинарный формат для {@link SessionBulkLoader}.
+ * Файл: int-сигнатура, затем блоки {@code [int длина][int число записей][записи]}.
+ * Запись: {@code [short длина userId][userId в UTF-8][long секунды входа][int наносекунды входа]
+ * [long секунды выхода][int наносекунды выхода]}, время — LocalDateTime в UTC-секундах.
+ * Блоки позволяют загрузчику делить файл на куски, не разбирая записи.
+ */
+public class BinarySessionWriter implements Closeable {
+
+    public static final int MAGIC = 0x4C534231;
+    private static final int RECORDS_PER_BLOCK = 4096;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+    private int blockRecords;
+
+    public BinarySessionWriter(Path file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+    }
+
+    public void write(String userId, LocalDateTime loginTime, LocalDateTime logoutTime) throws IOException {
+        byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+        if (userIdBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("userId is too long");
+        }
+        block.writeShort(userIdBytes.length);
+        block.write(userIdBytes);
+        block.writeLong(loginTime.toEpochSecond(ZoneOffset.UTC));
+        block.writeInt(loginTime.getNano());
+        block.writeLong(logoutTime.toEpochSecond(ZoneOffset.UTC));
+        block.writeInt(logoutTime.getNano());
+        if (++blockRecords == RECORDS_PER_BLOCK) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        out.writeInt(blockBytes.size());
+        out.writeInt(blockRecords);
+        blockBytes.writeTo(out);
+        blockBytes.reset();
+        blockRecords = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.itmo.testing.lab2.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей сессий в минутах с логарифмическими корзинами:
+ * значения меньше 8 хранятся точно, дальше каждая октава делится на 8 корзин
+ * (относительная ошибка не больше 1/16). Массив корзин покрывает только диапазон от самой
+ * короткой до самой длинной встреченной сессии, поэтому память на пользователя ограничена {@link #BUCKET_COUNT}.
+ * Гистограммы с одной схемой корзин складываются поэлементно, а запрос квантиля не зависит от числа сессий.
+ * Запись выполняет один писатель (под монитором журнала пользователя), чтение — без блокировок.
+ */
+public class DurationHistogram {
+
+    public record Percentiles(long count, long p50, long p95) {
+    }
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    public static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private static final int[] EMPTY = new int[0];
+
+    // counts[0] — индекс первой хранимой корзины, дальше счётчики корзин подряд
+    private volatile int[] counts = EMPTY;
+
+    void record(long minutes) {
+        int index = bucketIndex(minutes);
+        int[] current = counts;
+        if (current.length == 0) {
+            current = new int[]{index, 0};
+        } else if (index < current[0]) {
+            int shift = current[0] - index;
+            int[] grown = new int[current.length + shift];
+            grown[0] = index;
+            System.arraycopy(current, 1, grown, 1 + shift, current.length - 1);
+            current = grown;
+        } else if (index - current[0] + 1 >= current.length) {
+            current = Arrays.copyOf(current, index - current[0] + 2);
+        }
+        current[index - current[0] + 1]++;
+        counts = current;
+    }
+
+    public Percentiles percentiles() {
+        int[] snapshot = counts;
+        if (snapshot.length == 0) {
+            return percentiles(new long[0]);
+        }
+        int first = snapshot[0];
+        long[] buckets = new long[first + snapshot.length - 1];
+        for (int i = 1; i < snapshot.length; i++) {
+            buckets[first + i - 1] = snapshot[i];
+        }
+        return percentiles(buckets);
+    }
+
+    /**
+     * Потокобезопасная гистограмма по всем пользователям с полным набором корзин.
+     */
+    public static class Global {
+        private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+
+        public Global() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(long minutes) {
+            counts[bucketIndex(minutes)].increment();
+        }
+
+        public Percentiles percentiles() {
+            long[] buckets = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = counts[i].sum();
+            }
+            return DurationHistogram.percentiles(buckets);
+        }
+    }
+
+    static int bucketIndex(long minutes) {
+        if (minutes < SUB_COUNT) {
+            return (int) Math.max(minutes, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(minutes);
+        int sub = (int) (minutes >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long bucketValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + ((1L << shift) - 1) / 2;
+    }
+
+    private static Percentiles percentiles(long[] buckets) {
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        return new Percentiles(total, valueAt(buckets, total, 0.5), valueAt(buckets, total, 0.95));
+    }
+
+    private static long valueAt(long[] buckets, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(buckets.length - 1);
+    }
+}
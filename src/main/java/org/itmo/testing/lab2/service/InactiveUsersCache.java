@@ -0,0 +1,153 @@
+package org.itmo.testing.lab2.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Кэш результатов findInactiveUsers по days и временной корзине.
+ * Запись хранит неизменяемый результат обхода: пользователей, последний выход которых не позже
+ * границы, после которой пользователь уже не может стать неактивным до конца корзины.
+ * Поверх него лежит конкурентная карта пользователей, записавших сессии после начала обхода;
+ * при чтении их значение заменяет результат обхода. Поэтому ответ внутри корзины точный,
+ * а запись сессии только кладёт значение в карту и не ждёт ни обхода, ни копирования результата.
+ * При maxEntries = 0 кэш выключен и каждый запрос обходит пользователей.
+ */
+public class InactiveUsersCache {
+
+    public record LastLogout(String userId, LocalDateTime logoutTime) {
+    }
+
+    /**
+     * Результат обхода: подходящие пользователи и число просмотренных журналов.
+     */
+    public record Scan(List<LastLogout> lastLogouts, int visited) {
+    }
+
+    /**
+     * Ответ кэша: неактивные пользователи и число журналов, просмотренных ради этого запроса (0 при попадании).
+     */
+    public record Lookup(List<String> users, int scanned) {
+    }
+
+    private final long bucketMillis;
+    private final long staleNanos;
+    private final int maxEntries;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    public InactiveUsersCache(Duration bucket, int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Max entries must not be negative");
+        }
+        this.bucketMillis = bucket.toMillis();
+        // Запись старше двух корзин уже не может быть использована повторно
+        this.staleNanos = bucket.toNanos() * 2;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Возвращает неактивных более {@code days} дней пользователей на момент {@code now}.
+     * {@code scanUpTo} обходит пользователей с последним выходом не позже указанной границы;
+     * он вызывается уже после регистрации записи, чтобы параллельные записи сессий не потерялись.
+     */
+    public Lookup get(int days, LocalDateTime now, Function<LocalDateTime, Scan> scanUpTo) {
+        long bucket = bucketOf(now);
+        Entry entry = entries.get(days);
+        if (entry == null || entry.bucket != bucket) {
+            if (entry == null && entries.size() >= maxEntries) {
+                Entry uncached = build(new Entry(days, bucket), scanUpTo);
+                return new Lookup(collect(uncached, now), uncached.visited);
+            }
+            Entry fresh = new Entry(days, bucket);
+            Entry current = entries.compute(days, (k, existing) ->
+                    existing != null && existing.bucket >= bucket ? existing : fresh);
+            if (current == fresh) {
+                try {
+                    build(fresh, scanUpTo);
+                } catch (RuntimeException e) {
+                    entries.remove(days, fresh);
+                    fresh.ready.completeExceptionally(e);
+                    throw e;
+                }
+                return new Lookup(collect(fresh, now), fresh.visited);
+            }
+            entry = current;
+        }
+        return new Lookup(collect(entry, now), 0);
+    }
+
+    /**
+     * Сообщает о новом самом позднем выходе пользователя. Вызывается под монитором журнала пользователя.
+     */
+    void onSessionAppended(String userId, LocalDateTime lastLogoutTime) {
+        long now = System.nanoTime();
+        for (Entry entry : entries.values()) {
+            if (now - entry.createdNanos > staleNanos) {
+                entries.remove(entry.days, entry);
+            } else {
+                entry.updated.put(userId, lastLogoutTime);
+            }
+        }
+    }
+
+    private Entry build(Entry entry, Function<LocalDateTime, Scan> scanUpTo) {
+        Scan scan = scanUpTo.apply(entry.scanBound);
+        entry.scanned = scan.lastLogouts();
+        entry.visited = scan.visited();
+        // Завершение ready публикует результат обхода читателям
+        entry.ready.complete(null);
+        return entry;
+    }
+
+    private List<String> collect(Entry entry, LocalDateTime now) {
+        entry.ready.join();
+        LocalDateTime threshold = now.minusDays(entry.days + 1L);
+        List<String> result = new ArrayList<>();
+        for (LastLogout lastLogout : entry.scanned) {
+            if (!lastLogout.logoutTime().isAfter(threshold) && !entry.updated.containsKey(lastLogout.userId())) {
+                result.add(lastLogout.userId());
+            }
+        }
+        for (Map.Entry<String, LocalDateTime> updated : entry.updated.entrySet()) {
+            if (!updated.getValue().isAfter(threshold)) {
+                result.add(updated.getKey());
+            }
+        }
+        return result;
+    }
+
+    private long bucketOf(LocalDateTime time) {
+        return Math.floorDiv(time.toInstant(ZoneOffset.UTC).toEpochMilli(), bucketMillis);
+    }
+
+    private LocalDateTime bucketStart(long bucket) {
+        long millis = bucket * bucketMillis;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    private class Entry {
+        private final int days;
+        private final long bucket;
+        private final long createdNanos = System.nanoTime();
+        // Пользователь с более поздним выходом не станет неактивным до конца корзины
+        private final LocalDateTime scanBound;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        // Пользователи, записавшие сессии после регистрации записи, с их самым поздним выходом
+        private final Map<String, LocalDateTime> updated = new ConcurrentHashMap<>();
+        private List<LastLogout> scanned;
+        private int visited;
+
+        Entry(int days, long bucket) {
+            this.days = days;
+            this.bucket = bucket;
+            this.scanBound = bucketStart(bucket + 1).minusDays(days + 1L);
+        }
+    }
+}
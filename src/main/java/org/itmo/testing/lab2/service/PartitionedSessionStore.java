@@ -0,0 +1,128 @@
+package org.itmo.testing.lab2.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+/**
+ * Хранилище сессий, разбитое на партиции по хешу userId.
+ * Полный обход выполняется параллельно на выделенном ForkJoinPool,
+ * если пользователей не меньше порога; небольшие наборы обходятся последовательно.
+ */
+public class PartitionedSessionStore {
+
+    private final List<Map<String, SessionLog>> partitions;
+    private final int partitionMask;
+    private final int scanParallelism;
+    private final int parallelScanThreshold;
+    // Пул создаётся при первом параллельном обходе, чтобы не замедлять запуск приложения
+    private volatile ForkJoinPool scanPool;
+
+    public PartitionedSessionStore(int scanParallelism, int parallelScanThreshold) {
+        if (scanParallelism < 1) {
+            throw new IllegalArgumentException("Scan parallelism must be positive");
+        }
+        int partitionCount = Integer.highestOneBit(Math.max(1, scanParallelism * 4 - 1)) << 1;
+        this.partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ConcurrentHashMap<>());
+        }
+        this.partitionMask = partitionCount - 1;
+        this.scanParallelism = scanParallelism;
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    public boolean containsKey(String userId) {
+        return partitionFor(userId).containsKey(userId);
+    }
+
+    public SessionLog get(String userId) {
+        return partitionFor(userId).get(userId);
+    }
+
+    public SessionLog getOrCreate(String userId) {
+        return partitionFor(userId).computeIfAbsent(userId, k -> new SessionLog());
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, SessionLog> partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * Применяет mapper ко всем пользователям и собирает ненулевые результаты.
+     * Порядок результатов не определён.
+     */
+    public <R> List<R> scan(BiFunction<String, SessionLog, R> mapper) {
+        if (size() < parallelScanThreshold) {
+            return scanPartitions(0, partitions.size(), mapper);
+        }
+        return scanPool().invoke(new ScanTask<>(0, partitions.size(), mapper));
+    }
+
+    private ForkJoinPool scanPool() {
+        ForkJoinPool pool = scanPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = scanPool;
+                if (pool == null) {
+                    pool = new ForkJoinPool(scanParallelism);
+                    scanPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private Map<String, SessionLog> partitionFor(String userId) {
+        int h = userId.hashCode();
+        return partitions.get((h ^ (h >>> 16)) & partitionMask);
+    }
+
+    private <R> List<R> scanPartitions(int from, int to, BiFunction<String, SessionLog, R> mapper) {
+        List<R> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            for (Map.Entry<String, SessionLog> entry : partitions.get(i).entrySet()) {
+                R value = mapper.apply(entry.getKey(), entry.getValue());
+                if (value != null) {
+                    result.add(value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private class ScanTask<R> extends RecursiveTask<List<R>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final BiFunction<String, SessionLog, R> mapper;
+
+        ScanTask(int from, int to, BiFunction<String, SessionLog, R> mapper) {
+            this.from = from;
+            this.to = to;
+            this.mapper = mapper;
+        }
+
+        @Override
+        protected List<R> compute() {
+            if (to - from <= 1) {
+                return scanPartitions(from, to, mapper);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<R> left = new ScanTask<>(from, middle, mapper);
+            left.fork();
+            List<R> result = new ScanTask<>(middle, to, mapper).compute();
+            result.addAll(left.join());
+            return result;
+        }
+    }
+}
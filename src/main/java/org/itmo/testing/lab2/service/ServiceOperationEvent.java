@@ -0,0 +1,38 @@
+package org.itmo.testing.lab2.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR для вызова метода сервиса аналитики.
+ * По умолчанию выключено: пока запись не включит его, begin/commit почти ничего не стоят.
+ */
+@Name("org.itmo.testing.lab2.ServiceOperation")
+@Label("Service Operation")
+@Category({"Lab2", "Service"})
+@Description("Call of a user analytics service method")
+@Enabled(false)
+@StackTrace(false)
+public class ServiceOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("User Id")
+    String userId;
+
+    @Label("Sessions Scanned")
+    long sessionsScanned;
+
+    static void commit(ServiceOperationEvent event, String operation, String userId, long sessionsScanned) {
+        event.operation = operation;
+        event.userId = userId;
+        event.sessionsScanned = sessionsScanned;
+        event.commit();
+    }
+}
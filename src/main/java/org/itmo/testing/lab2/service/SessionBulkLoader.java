@@ -0,0 +1,400 @@
+package org.itmo.testing.lab2.service;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService.Session;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Массовая загрузка исторических сессий из CSV или компактного бинарного файла.
+ * Файл отображается в память по кускам, куски разбираются параллельно,
+ * затем сессии вставляются пакетами по пользователям в обход проверок одиночной записи.
+ * Порядок сессий каждого пользователя совпадает с порядком в файле.
+ *
+ * <p>CSV: строки {@code userId,loginTime,logoutTime} в формате ISO-8601, необязательный заголовок.
+ * Бинарный формат описан в {@link BinarySessionWriter}.
+ */
+public class SessionBulkLoader {
+
+    public enum Format {
+        CSV, BINARY;
+
+        public static Format fromFileName(String fileName) {
+            return fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : BINARY;
+        }
+    }
+
+    public record Result(long loaded, long skippedUnknownUser, long malformed, long elapsedMillis) {
+    }
+
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 64L << 20;
+    private static final int MAX_USER_ID_BYTES = 1 << 16;
+
+    private final UserAnalyticsService service;
+    private final int parallelism;
+    private final int partitionCount;
+
+    public SessionBulkLoader(UserAnalyticsService service, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.service = service;
+        this.parallelism = parallelism;
+        this.partitionCount = parallelism * 4;
+    }
+
+    public Result load(Path file, Format format, boolean registerMissingUsers) throws IOException {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> chunks = format == Format.CSV ? csvChunks(channel) : binaryChunks(channel);
+
+            List<Callable<ParsedChunk>> parseTasks = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                parseTasks.add(() -> format == Format.CSV
+                        ? parseCsv(channel, chunk[0], chunk[1])
+                        : parseBinary(channel, chunk[0], chunk[1]));
+            }
+            List<ParsedChunk> parsed = invokeAll(pool, parseTasks);
+
+            // Вставка разбита по пользователям, а куски внутри раздела идут по порядку файла
+            List<Callable<long[]>> insertTasks = new ArrayList<>();
+            for (int i = 0; i < partitionCount; i++) {
+                int partition = i;
+                insertTasks.add(() -> insertPartition(parsed, partition, registerMissingUsers));
+            }
+            long loaded = 0;
+            long skipped = 0;
+            for (long[] counts : invokeAll(pool, insertTasks)) {
+                loaded += counts[0];
+                skipped += counts[1];
+            }
+            long malformed = 0;
+            for (ParsedChunk chunk : parsed) {
+                malformed += chunk.malformed;
+            }
+            return new Result(loaded, skipped, malformed, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long[] insertPartition(List<ParsedChunk> parsed, int partition, boolean registerMissingUsers) {
+        long loaded = 0;
+        long skipped = 0;
+        for (ParsedChunk chunk : parsed) {
+            for (Map.Entry<String, List<Session>> entry : chunk.byPartition.get(partition).entrySet()) {
+                if (service.bulkRecordSessions(entry.getKey(), entry.getValue(), registerMissingUsers)) {
+                    loaded += entry.getValue().size();
+                } else {
+                    skipped += entry.getValue().size();
+                }
+            }
+        }
+        return new long[]{loaded, skipped};
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bulk load interrupted");
+        } catch (ExecutionException e) {
+            // ForkJoinPool оборачивает исключение задачи в RuntimeException, поэтому ищем по цепочке причин
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (cause instanceof UncheckedIOException uncheckedIOException) {
+                    throw uncheckedIOException.getCause();
+                }
+            }
+            throw new IllegalStateException("Bulk load failed", e.getCause());
+        }
+        return results;
+    }
+
+    private long chunkBytes(long size) {
+        return Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, size / (parallelism * 4L) + 1));
+    }
+
+    private List<long[]> csvChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkBytes = chunkBytes(size);
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkBytes);
+            if (end < size) {
+                end = nextLineStart(channel, end, size);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long current = position;
+        while (current < size) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+    }
+
+    private List<long[]> binaryChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        if (size < 4 || channel.read(header, 0) < 4 || header.getInt(0) != BinarySessionWriter.MAGIC) {
+            throw new IOException("Not a binary session file");
+        }
+        long chunkBytes = chunkBytes(size);
+        List<long[]> chunks = new ArrayList<>();
+        long start = 4;
+        long position = 4;
+        while (position < size) {
+            header.clear();
+            if (channel.read(header, position) < 8) {
+                throw new IOException("Truncated block header at " + position);
+            }
+            int blockBytes = header.getInt(0);
+            if (blockBytes < 0) {
+                throw new IOException("Invalid block length " + blockBytes + " at " + position);
+            }
+            // Сравнение с остатком файла вместо суммы исключает переполнение
+            if (blockBytes > size - position - 8) {
+                throw new IOException("Truncated block at " + position);
+            }
+            position += 8 + blockBytes;
+            if (position - start >= chunkBytes) {
+                chunks.add(new long[]{start, position});
+                start = position;
+            }
+        }
+        if (start < size) {
+            chunks.add(new long[]{start, size});
+        }
+        return chunks;
+    }
+
+    private ParsedChunk parseCsv(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ParsedChunk chunk = new ParsedChunk(partitionCount);
+        byte[] scratch = new byte[256];
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > position) {
+                boolean header = start == 0 && position == 0;
+                scratch = parseCsvLine(buffer, position, contentEnd, header, chunk, scratch);
+            }
+            position = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static byte[] parseCsvLine(ByteBuffer buffer, int from, int to, boolean firstLine,
+                                       ParsedChunk chunk, byte[] scratch) {
+        int firstComma = indexOf(buffer, from, to, (byte) ',');
+        int secondComma = firstComma < 0 ? -1 : indexOf(buffer, firstComma + 1, to, (byte) ',');
+        if (secondComma < 0 || firstComma == from) {
+            chunk.malformed++;
+            return scratch;
+        }
+        int userIdLength = firstComma - from;
+        if (scratch.length < userIdLength) {
+            scratch = new byte[Math.max(userIdLength, scratch.length * 2)];
+        }
+        buffer.get(from, scratch, 0, userIdLength);
+        String userId = new String(scratch, 0, userIdLength, StandardCharsets.UTF_8);
+        if (firstLine && userId.equals("userId")) {
+            return scratch;
+        }
+        LocalDateTime login = parseDateTime(buffer, firstComma + 1, secondComma);
+        LocalDateTime logout = parseDateTime(buffer, secondComma + 1, to);
+        if (login == null || logout == null) {
+            chunk.malformed++;
+            return scratch;
+        }
+        chunk.add(userId, new Session(login, logout));
+        return scratch;
+    }
+
+    private ParsedChunk parseBinary(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ParsedChunk chunk = new ParsedChunk(partitionCount);
+        byte[] scratch = new byte[256];
+        while (buffer.hasRemaining()) {
+            long blockStart = start + buffer.position();
+            // Длины блоков проверены при разбиении на куски, поэтому блок целиком лежит в куске
+            int blockBytes = buffer.getInt();
+            int records = buffer.getInt();
+            ByteBuffer block = buffer.slice(buffer.position(), blockBytes);
+            buffer.position(buffer.position() + blockBytes);
+            try {
+                if (records < 0) {
+                    throw new IOException("Invalid record count " + records + " in block at " + blockStart);
+                }
+                for (int i = 0; i < records; i++) {
+                    scratch = parseBinaryRecord(block, chunk, scratch);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated record in block at " + blockStart, e);
+            }
+            if (block.hasRemaining()) {
+                throw new IOException("Unexpected bytes after records in block at " + blockStart);
+            }
+        }
+        return chunk;
+    }
+
+    private static byte[] parseBinaryRecord(ByteBuffer block, ParsedChunk chunk, byte[] scratch) {
+        int userIdLength = Short.toUnsignedInt(block.getShort());
+        if (scratch.length < userIdLength) {
+            scratch = new byte[MAX_USER_ID_BYTES];
+        }
+        block.get(scratch, 0, userIdLength);
+        String userId = new String(scratch, 0, userIdLength, StandardCharsets.UTF_8);
+        long loginSecond = block.getLong();
+        int loginNano = block.getInt();
+        long logoutSecond = block.getLong();
+        int logoutNano = block.getInt();
+        try {
+            chunk.add(userId, new Session(
+                    LocalDateTime.ofEpochSecond(loginSecond, loginNano, ZoneOffset.UTC),
+                    LocalDateTime.ofEpochSecond(logoutSecond, logoutNano, ZoneOffset.UTC)));
+        } catch (DateTimeException e) {
+            chunk.malformed++;
+        }
+        return scratch;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Разбор ISO-8601 {@code yyyy-MM-ddTHH:mm[:ss[.fffffffff]]} прямо из буфера;
+     * прочие варианты разбираются через {@link LocalDateTime#parse}. Возвращает null при ошибке.
+     */
+    static LocalDateTime parseDateTime(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (length >= 16 && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-'
+                && buffer.get(from + 10) == 'T' && buffer.get(from + 13) == ':') {
+            int year = digits(buffer, from, 4);
+            int month = digits(buffer, from + 5, 2);
+            int day = digits(buffer, from + 8, 2);
+            int hour = digits(buffer, from + 11, 2);
+            int minute = digits(buffer, from + 14, 2);
+            int second = 0;
+            int nano = 0;
+            boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0;
+            if (valid && length > 16) {
+                valid = length >= 19 && buffer.get(from + 16) == ':';
+                second = valid ? digits(buffer, from + 17, 2) : -1;
+                valid = second >= 0;
+                if (valid && length > 19) {
+                    int fractionDigits = length - 20;
+                    valid = buffer.get(from + 19) == '.' && fractionDigits >= 1 && fractionDigits <= 9;
+                    nano = valid ? digits(buffer, from + 20, fractionDigits) : -1;
+                    valid = nano >= 0;
+                    for (int i = fractionDigits; valid && i < 9; i++) {
+                        nano *= 10;
+                    }
+                }
+            }
+            if (valid) {
+                try {
+                    return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+                } catch (DateTimeException e) {
+                    return null;
+                }
+            }
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(from, bytes);
+        try {
+            return LocalDateTime.parse(new String(bytes, StandardCharsets.US_ASCII).trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static class ParsedChunk {
+        private final List<Map<String, List<Session>>> byPartition;
+        private long malformed;
+
+        ParsedChunk(int partitionCount) {
+            byPartition = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                byPartition.add(new HashMap<>());
+            }
+        }
+
+        void add(String userId, Session session) {
+            int h = userId.hashCode();
+            byPartition.get(Math.floorMod(h ^ (h >>> 16), byPartition.size()))
+                    .computeIfAbsent(userId, k -> new ArrayList<>())
+                    .add(session);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.itmo.testing.lab2.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для отсева повторно присланных сессий.
+ * Отрицательный ответ точен ("точно новая"), положительный требует точной проверки.
+ * Хранит два поколения фильтра и переключает их по окончании окна,
+ * поэтому объём памяти фиксирован, а повтор распознаётся в течение одного-двух окон.
+ * Для точной проверки фильтр помнит наименьший номер записи среди хэшей,
+ * которые ещё в нём хранятся: старые записи проверять не нужно.
+ * Ключи идемпотентности хранятся в наборах тех же поколений и забываются вместе с ними.
+ */
+public class SessionDeduplicator {
+
+    private static final int MIN_LOG2_BITS = 6;
+    private static final int MAX_LOG2_BITS = 30;
+    private static final int MAX_HASH_FUNCTIONS = 16;
+
+    private final int bitMask;
+    private final int hashFunctions;
+    private final long windowNanos;
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile long windowStart;
+    private final AtomicLong currentFirstSequence = new AtomicLong(Long.MAX_VALUE);
+    private volatile long previousFirstSequence = Long.MAX_VALUE;
+    private volatile Set<String> currentKeys = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> previousKeys = ConcurrentHashMap.newKeySet();
+
+    public SessionDeduplicator(int log2Bits, int hashFunctions, Duration window) {
+        if (log2Bits < MIN_LOG2_BITS || log2Bits > MAX_LOG2_BITS || hashFunctions < 1
+                || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters");
+        }
+        this.bitMask = (1 << log2Bits) - 1;
+        this.hashFunctions = hashFunctions;
+        this.windowNanos = window.toNanos();
+        this.current = new AtomicLongArray(1 << (log2Bits - 6));
+        this.previous = new AtomicLongArray(1 << (log2Bits - 6));
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Фильтр, рассчитанный на {@code expectedInserts} записей за окно с долей ложных
+     * срабатываний не больше {@code falsePositiveRate}; размер округляется вверх до степени двойки.
+     */
+    public static SessionDeduplicator forExpectedInserts(long expectedInserts, double falsePositiveRate,
+                                                         Duration window) {
+        if (expectedInserts < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters");
+        }
+        double ln2 = Math.log(2);
+        double bits = -expectedInserts * Math.log(falsePositiveRate) / (ln2 * ln2);
+        int log2Bits = (int) Math.ceil(Math.log(bits) / ln2);
+        log2Bits = Math.max(MIN_LOG2_BITS, Math.min(MAX_LOG2_BITS, log2Bits));
+        long hashFunctions = Math.round((double) (1L << log2Bits) / expectedInserts * ln2);
+        return new SessionDeduplicator(log2Bits,
+                (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS, hashFunctions)), window);
+    }
+
+    /**
+     * Параметры из системных свойств lab2.dedup.expectedInsertsPerWindow, .falsePositiveRate и .windowSeconds.
+     */
+    public static SessionDeduplicator fromSystemProperties() {
+        return forExpectedInserts(
+                Long.getLong("lab2.dedup.expectedInsertsPerWindow", 1_000_000),
+                Double.parseDouble(System.getProperty("lab2.dedup.falsePositiveRate", "0.01")),
+                Duration.ofSeconds(Long.getLong("lab2.dedup.windowSeconds", 600)));
+    }
+
+    int bitCount() {
+        return bitMask + 1;
+    }
+
+    int hashFunctions() {
+        return hashFunctions;
+    }
+
+    public static long contentHash(String userId, LocalDateTime loginTime, LocalDateTime logoutTime) {
+        long h = mix(userId.hashCode());
+        h = mix(h ^ loginTime.toEpochSecond(ZoneOffset.UTC) * 31 + loginTime.getNano());
+        return mix(h ^ logoutTime.toEpochSecond(ZoneOffset.UTC) * 31 + logoutTime.getNano());
+    }
+
+    public static long keyHash(String userId, String idempotencyKey) {
+        return mix(mix(userId.hashCode()) ^ idempotencyKey.hashCode());
+    }
+
+    public boolean mightContain(long hash) {
+        rotateIfExpired();
+        return contains(current, hash) || contains(previous, hash);
+    }
+
+    /**
+     * Наименьший номер записи, добавленной в фильтр и ещё не забытой; точная проверка повтора
+     * может ограничиться записями с номерами не меньше этого.
+     */
+    public long rememberedSince() {
+        return Math.min(previousFirstSequence, currentFirstSequence.get());
+    }
+
+    /**
+     * Добавляет хэш записи с глобальным номером {@code sequence}.
+     */
+    public void add(long hash, long sequence) {
+        AtomicLongArray bits = current;
+        currentFirstSequence.accumulateAndGet(sequence, Math::min);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = bits.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * Запоминает ключ идемпотентности записи с глобальным номером {@code sequence} до конца окна.
+     */
+    public void addKey(String userId, String idempotencyKey, long sequence) {
+        add(keyHash(userId, idempotencyKey), sequence);
+        currentKeys.add(compositeKey(userId, idempotencyKey));
+    }
+
+    /**
+     * Точная проверка ключа идемпотентности в пределах окна; фильтр Блума отсекает новые ключи без поиска.
+     */
+    public boolean containsKey(String userId, String idempotencyKey) {
+        if (!mightContain(keyHash(userId, idempotencyKey))) {
+            return false;
+        }
+        String key = compositeKey(userId, idempotencyKey);
+        return currentKeys.contains(key) || previousKeys.contains(key);
+    }
+
+    private static String compositeKey(String userId, String idempotencyKey) {
+        return userId.length() + ":" + userId + idempotencyKey;
+    }
+
+    private boolean contains(AtomicLongArray bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotateIfExpired() {
+        if (System.nanoTime() - windowStart < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart < windowNanos) {
+                return;
+            }
+            // Самое старое поколение очищается и становится текущим, без новых аллокаций
+            AtomicLongArray oldest = previous;
+            for (int i = 0; i < oldest.length(); i++) {
+                oldest.set(i, 0L);
+            }
+            previous = current;
+            previousFirstSequence = currentFirstSequence.getAndSet(Long.MAX_VALUE);
+            previousKeys = currentKeys;
+            currentKeys = ConcurrentHashMap.newKeySet();
+            current = oldest;
+            windowStart = now;
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
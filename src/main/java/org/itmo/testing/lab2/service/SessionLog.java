@@ -0,0 +1,225 @@
+package org.itmo.testing.lab2.service;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService.Session;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Журнал сессий одного пользователя, в который только дописывают.
+ * Сессии лежат в сегментах по 64 ячейки: заполненная ячейка больше не меняется,
+ * а каталог сегментов при росте копируется. Поэтому читатель получает неизменяемое
+ * представление без блокировок, пока писатель продолжает дописывать.
+ * Первый сегмент начинается с одной ячейки и растёт удвоением, а версии месяцев хранят первый месяц
+ * в полях: журнал пользователя с единственной сессией занимает немного больше самой сессии.
+ * Каждая запись помечена глобальным номером, что позволяет читать журнал на момент эпохи.
+ */
+public class SessionLog {
+
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile Directory directory = new Directory(new Session[][]{new Session[1]}, new long[][]{new long[1]});
+    private volatile int size;
+    // Индекс сессии с самым поздним выходом: массовая загрузка дописывает историю после текущих сессий
+    private volatile int latestLogoutIndex;
+
+    private volatile long totalMinutes;
+    // Версия первого месяца журнала хранится в полях, карта нужна только для остальных месяцев
+    private YearMonth firstMonth;
+    private volatile long firstMonthVersion;
+    private volatile Map<YearMonth, Long> otherMonthVersions;
+    private final DurationHistogram durationHistogram = new DurationHistogram();
+
+    /**
+     * Дописывает сессию. Вызывающий должен держать монитор журнала.
+     */
+    void append(Session session, long sequence, long minutes) {
+        int index = size;
+        int segment = index >>> SEGMENT_SHIFT;
+        int offset = index & SEGMENT_MASK;
+        Directory current = directory;
+        if (segment == current.sessions().length || current.sessions()[segment] == null
+                || offset == current.sessions()[segment].length) {
+            current = grow(current, segment);
+            directory = current;
+        }
+        current.sessions()[segment][offset] = session;
+        current.sequences()[segment][offset] = sequence;
+        if (index > 0 && session.getLogoutTime().isAfter(current.session(latestLogoutIndex).getLogoutTime())) {
+            latestLogoutIndex = index;
+        }
+        totalMinutes += minutes;
+        recordMonth(YearMonth.from(session.getLoginTime()));
+        durationHistogram.record(minutes);
+        // Публикация: всё, что записано выше, становится видимым читателям после записи size
+        size = index + 1;
+    }
+
+    /**
+     * Новый каталог с местом под ячейку в сегменте {@code segment}. Массивы, доступные через
+     * опубликованные каталоги, не заменяются: первый сегмент при росте копируется, а не расширяется на месте.
+     */
+    private static Directory grow(Directory current, int segment) {
+        Session[][] sessions = current.sessions();
+        long[][] sequences = current.sequences();
+        int length = segment == sessions.length ? sessions.length * 2 : sessions.length;
+        Session[][] nextSessions = Arrays.copyOf(sessions, length);
+        long[][] nextSequences = Arrays.copyOf(sequences, length);
+        if (nextSessions[segment] == null) {
+            nextSessions[segment] = new Session[SEGMENT_SIZE];
+            nextSequences[segment] = new long[SEGMENT_SIZE];
+        } else {
+            int capacity = Math.min(SEGMENT_SIZE, nextSessions[segment].length * 2);
+            nextSessions[segment] = Arrays.copyOf(nextSessions[segment], capacity);
+            nextSequences[segment] = Arrays.copyOf(nextSequences[segment], capacity);
+        }
+        return new Directory(nextSessions, nextSequences);
+    }
+
+    private void recordMonth(YearMonth month) {
+        if (firstMonth == null) {
+            firstMonth = month;
+        }
+        if (firstMonth.equals(month)) {
+            firstMonthVersion = firstMonthVersion + 1;
+            return;
+        }
+        Map<YearMonth, Long> months = otherMonthVersions;
+        if (months == null) {
+            months = new ConcurrentHashMap<>();
+            otherMonthVersions = months;
+        }
+        months.merge(month, 1L, Long::sum);
+    }
+
+    /**
+     * Есть ли среди сессий с номером записи не меньше {@code sequence} подходящая под условие.
+     * Просматривает журнал с конца и останавливается на более ранних записях.
+     * Вызывающий должен держать монитор журнала.
+     */
+    boolean anyRecordedSince(long sequence, Predicate<Session> predicate) {
+        Directory current = directory;
+        for (int i = size - 1; i >= 0; i--) {
+            if (current.sequence(i) < sequence) {
+                return false;
+            }
+            if (predicate.test(current.session(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Самое позднее время выхода среди всех сессий или null, если журнал пуст.
+     */
+    public LocalDateTime getLastLogoutTime() {
+        return lastLogoutTime(view());
+    }
+
+    /**
+     * Самое позднее время выхода среди сессий, записанных не позже эпохи {@code epoch}.
+     */
+    public LocalDateTime getLastLogoutTimeAt(long epoch) {
+        return lastLogoutTime(viewAt(epoch));
+    }
+
+    private LocalDateTime lastLogoutTime(List<Session> sessions) {
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        // Индекс прочитан после размера представления, поэтому он не старше представления
+        int latest = latestLogoutIndex;
+        if (latest < sessions.size()) {
+            return sessions.get(latest).getLogoutTime();
+        }
+        // Самая поздняя сессия записана после снимка: ищем среди видимых
+        LocalDateTime last = sessions.get(0).getLogoutTime();
+        for (int i = 1; i < sessions.size(); i++) {
+            LocalDateTime logoutTime = sessions.get(i).getLogoutTime();
+            if (logoutTime.isAfter(last)) {
+                last = logoutTime;
+            }
+        }
+        return last;
+    }
+
+    public long getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    public DurationHistogram getDurationHistogram() {
+        return durationHistogram;
+    }
+
+    public long getMonthlyVersion(YearMonth month) {
+        // Чтение volatile-версии делает видимым первый месяц, записанный до неё
+        long version = firstMonthVersion;
+        if (month.equals(firstMonth)) {
+            return version;
+        }
+        Map<YearMonth, Long> months = otherMonthVersions;
+        return months == null ? 0L : months.getOrDefault(month, 0L);
+    }
+    /**
+     * Все сессии, записанные к текущему моменту.
+     */
+    public List<Session> view() {
+        int n = size;
+        return new View(directory, n);
+    }
+
+    /**
+     * Сессии, записанные не позже эпохи {@code epoch}.
+     */
+    public List<Session> viewAt(long epoch) {
+        int n = size;
+        Directory current = directory;
+        while (n > 0 && current.sequence(n - 1) > epoch) {
+            n--;
+        }
+        return new View(current, n);
+    }
+
+    private record Directory(Session[][] sessions, long[][] sequences) {
+        Session session(int index) {
+            return sessions[index >>> SEGMENT_SHIFT][index & SEGMENT_MASK];
+        }
+
+        long sequence(int index) {
+            return sequences[index >>> SEGMENT_SHIFT][index & SEGMENT_MASK];
+        }
+    }
+
+    private static class View extends AbstractList<Session> implements RandomAccess {
+        private final Directory directory;
+        private final int size;
+
+        View(Directory directory, int size) {
+            this.directory = directory;
+            this.size = size;
+        }
+
+        @Override
+        public Session get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return directory.session(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
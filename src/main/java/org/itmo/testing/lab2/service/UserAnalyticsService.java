@@ -1,73 +1,267 @@
 package org.itmo.testing.lab2.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UserAnalyticsService {
 
-    private final Map<String, User> users = new HashMap<>();
-    private final Map<String, List<Session>> userSessions = new HashMap<>();
+    public static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 10_000;
+    private static final long DEFAULT_DEDUP_EXPECTED_INSERTS = 1_000_000;
+    private static final double DEFAULT_DEDUP_FALSE_POSITIVE_RATE = 0.01;
+    private static final Duration DEFAULT_DEDUP_WINDOW = Duration.ofMinutes(10);
+    private static final int DEFAULT_INACTIVE_CACHE_ENTRIES = 64;
+    private static final Duration INACTIVE_CACHE_BUCKET = Duration.ofMinutes(1);
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final PartitionedSessionStore userSessions;
+    // Глобальный номер записи: аналитические запросы читают журналы на момент эпохи
+    private final AtomicLong sequence = new AtomicLong();
+    private final DurationHistogram.Global globalDurations = new DurationHistogram.Global();
+    private final List<ActivityListener> activityListeners = new CopyOnWriteArrayList<>();
+    private final SessionDeduplicator deduplicator;
+    private final InactiveUsersCache inactiveUsersCache;
+
+    public UserAnalyticsService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_PARALLEL_SCAN_THRESHOLD);
+    }
+
+    public UserAnalyticsService(int scanParallelism, int parallelScanThreshold) {
+        this(scanParallelism, parallelScanThreshold, SessionDeduplicator.forExpectedInserts(
+                DEFAULT_DEDUP_EXPECTED_INSERTS, DEFAULT_DEDUP_FALSE_POSITIVE_RATE, DEFAULT_DEDUP_WINDOW));
+    }
+
+    public UserAnalyticsService(int scanParallelism, int parallelScanThreshold, SessionDeduplicator deduplicator) {
+        this(scanParallelism, parallelScanThreshold, deduplicator, DEFAULT_INACTIVE_CACHE_ENTRIES);
+    }
+
+    /**
+     * inactiveCacheEntries ограничивает число значений days в кэше findInactiveUsers; 0 выключает кэш.
+     */
+    public UserAnalyticsService(int scanParallelism, int parallelScanThreshold, SessionDeduplicator deduplicator,
+                                int inactiveCacheEntries) {
+        this.userSessions = new PartitionedSessionStore(scanParallelism, parallelScanThreshold);
+        this.deduplicator = deduplicator;
+        this.inactiveUsersCache = new InactiveUsersCache(INACTIVE_CACHE_BUCKET, inactiveCacheEntries);
+    }
 
     public boolean registerUser(String userId, String userName) {
-        if (users.containsKey(userId)) {
+        if (users.putIfAbsent(userId, new User(userId, userName)) != null) {
             throw new IllegalArgumentException("User already exists");
         }
-        users.put(userId, new User(userId, userName));
         return true;
     }
 
+    /**
+     * Запись сессии без ключа идемпотентности: повтор с тем же содержимым в пределах окна не записывается.
+     */
     public void recordSession(String userId, LocalDateTime loginTime, LocalDateTime logoutTime) {
+        recordSession(userId, loginTime, logoutTime, null);
+    }
+
+    /**
+     * Идемпотентная запись сессии: повтор с тем же idempotencyKey, а без ключа — с тем же
+     * содержимым, в пределах окна дедупликации не записывается. Возвращает false, если сессия уже была записана.
+     * Ключи хранятся только в дедупликаторе и забываются вместе с его окнами.
+     */
+    public boolean recordSession(String userId, LocalDateTime loginTime, LocalDateTime logoutTime,
+                                 String idempotencyKey) {
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.begin();
         if (!users.containsKey(userId)) {
             throw new IllegalArgumentException("User not found");
         }
-        Session session = new Session(loginTime, logoutTime);
-        userSessions.computeIfAbsent(userId, k -> new ArrayList<>()).add(session);
+        long contentHash = SessionDeduplicator.contentHash(userId, loginTime, logoutTime);
+        SessionLog log = userSessions.getOrCreate(userId);
+        synchronized (log) {
+            // Фильтр Блума отвечает "точно новая" без аллокаций; при совпадении журнал проверяется
+            // только по записям, которые фильтр ещё помнит. В событие попадает число просмотренных сессий
+            int[] examined = new int[1];
+            boolean duplicate = idempotencyKey != null
+                    ? deduplicator.containsKey(userId, idempotencyKey)
+                    : deduplicator.mightContain(contentHash)
+                    && log.anyRecordedSince(deduplicator.rememberedSince(), session -> {
+                        examined[0]++;
+                        return loginTime.equals(session.getLoginTime()) && logoutTime.equals(session.getLogoutTime());
+                    });
+            if (!duplicate) {
+                long recorded = appendSession(userId, log, new Session(loginTime, logoutTime));
+                // Содержимое запоминается и для сессий с ключом, чтобы повтор без ключа тоже был распознан
+                deduplicator.add(contentHash, recorded);
+                if (idempotencyKey != null) {
+                    deduplicator.addKey(userId, idempotencyKey, recorded);
+                }
+            }
+            if (event.shouldCommit()) {
+                ServiceOperationEvent.commit(event, "recordSession", userId, examined[0]);
+            }
+            return !duplicate;
+        }
+    }
+
+    /**
+     * Пакетная запись сессий одного пользователя для массовой загрузки: без дедупликации,
+     * с одной проверкой пользователя и одним захватом монитора на весь пакет.
+     * Сессии могут быть старше уже записанных: неактивность считается по самому позднему выходу.
+     * Слушатели получают одно изменение суммарной активности на пакет.
+     * Возвращает false, если пользователь не зарегистрирован и registerMissingUser не задан.
+     */
+    public boolean bulkRecordSessions(String userId, List<Session> sessions, boolean registerMissingUser) {
+        if (!users.containsKey(userId)) {
+            if (!registerMissingUser) {
+                return false;
+            }
+            users.putIfAbsent(userId, new User(userId, userId));
+        }
+        if (sessions.isEmpty()) {
+            return true;
+        }
+        SessionLog log = userSessions.getOrCreate(userId);
+        synchronized (log) {
+            long previousTotal = log.getTotalMinutes();
+            for (Session session : sessions) {
+                long minutes = ChronoUnit.MINUTES.between(session.getLoginTime(), session.getLogoutTime());
+                log.append(session, sequence.incrementAndGet(), minutes);
+                globalDurations.record(minutes);
+            }
+            inactiveUsersCache.onSessionAppended(userId, log.getLastLogoutTime());
+            for (ActivityListener listener : activityListeners) {
+                listener.onTotalActivityChanged(userId, previousTotal, log.getTotalMinutes());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Дописывает сессию и обновляет агрегаты. Вызывается под монитором журнала пользователя.
+     * Возвращает номер записи.
+     */
+    private long appendSession(String userId, SessionLog log, Session session) {
+        long minutes = ChronoUnit.MINUTES.between(session.getLoginTime(), session.getLogoutTime());
+        long previousTotal = log.getTotalMinutes();
+        long recorded = sequence.incrementAndGet();
+        log.append(session, recorded, minutes);
+        globalDurations.record(minutes);
+        inactiveUsersCache.onSessionAppended(userId, log.getLastLogoutTime());
+        for (ActivityListener listener : activityListeners) {
+            listener.onTotalActivityChanged(userId, previousTotal, log.getTotalMinutes());
+        }
+        return recorded;
+    }
+
+    public void addActivityListener(ActivityListener listener) {
+        activityListeners.add(listener);
     }
 
     public long getTotalActivityTime(String userId) {
-        if (!userSessions.containsKey(userId)) {
-            throw new IllegalArgumentException("No sessions found for user");
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.begin();
+        // Сумма поддерживается инкрементально при записи сессий
+        long total = requireSessions(userId).getTotalMinutes();
+        if (event.shouldCommit()) {
+            ServiceOperationEvent.commit(event, "getTotalActivityTime", userId, 0);
         }
-        return userSessions.get(userId).stream()
-                .mapToLong(session -> ChronoUnit.MINUTES.between(session.getLoginTime(), session.getLogoutTime()))
-                .sum();
+        return total;
     }
 
+    /**
+     * Медиана и 95-й перцентиль длительности сессий пользователя по гистограмме,
+     * которая обновляется при записи; время ответа не зависит от числа сессий.
+     */
+    public DurationHistogram.Percentiles getSessionDurationPercentiles(String userId) {
+        return requireSessions(userId).getDurationHistogram().percentiles();
+    }
+
+    public DurationHistogram.Percentiles getGlobalSessionDurationPercentiles() {
+        return globalDurations.percentiles();
+    }
+
+    /**
+     * Повторные запросы с тем же days в пределах минутной корзины обслуживаются из кэша,
+     * который запись сессий обновляет точечно. Обход при промахе выполняется по согласованному
+     * снимку: учитываются сессии, записанные до начала запроса, и не учитываются начатые после,
+     * поэтому запись не блокируется на время обхода.
+     */
     public List<String> findInactiveUsers(int days) {
-        List<String> inactiveUsers = new ArrayList<>();
-        for (Map.Entry<String, List<Session>> entry : userSessions.entrySet()) {
-            String userId = entry.getKey();
-            List<Session> sessions = entry.getValue();
-            if (sessions.isEmpty()) continue;
-            LocalDateTime lastSessionTime = sessions.get(sessions.size() - 1).getLogoutTime();
-            long daysInactive = ChronoUnit.DAYS.between(lastSessionTime, LocalDateTime.now());
-            if (daysInactive > days) {
-                inactiveUsers.add(userId);
-            }
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.begin();
+        LocalDateTime now = LocalDateTime.now();
+        List<String> inactiveUsers;
+        int scanned;
+        if (days < 0) {
+            // DAYS.between округляет к нулю, поэтому для отрицательных days граница не сводится к сравнению времени
+            long epoch = sequence.get();
+            scanned = userSessions.size();
+            inactiveUsers = userSessions.scan((userId, log) -> {
+                LocalDateTime lastSessionTime = log.getLastLogoutTimeAt(epoch);
+                if (lastSessionTime == null) return null;
+                long daysInactive = ChronoUnit.DAYS.between(lastSessionTime, now);
+                return daysInactive > days ? userId : null;
+            });
+        } else {
+            InactiveUsersCache.Lookup lookup = inactiveUsersCache.get(days, now, this::scanLastLogoutsUpTo);
+            inactiveUsers = lookup.users();
+            scanned = lookup.scanned();
+        }
+        if (event.shouldCommit()) {
+            // Обход смотрит только последнюю сессию каждого пользователя; ответ из кэша журналы не просматривает
+            ServiceOperationEvent.commit(event, "findInactiveUsers", null, scanned);
         }
         return inactiveUsers;
     }
 
+    private InactiveUsersCache.Scan scanLastLogoutsUpTo(LocalDateTime bound) {
+        long epoch = sequence.get();
+        int visited = userSessions.size();
+        List<InactiveUsersCache.LastLogout> lastLogouts = userSessions.scan((userId, log) -> {
+            LocalDateTime lastSessionTime = log.getLastLogoutTimeAt(epoch);
+            if (lastSessionTime == null) return null;
+            return lastSessionTime.isAfter(bound) ? null : new InactiveUsersCache.LastLogout(userId, lastSessionTime);
+        });
+        return new InactiveUsersCache.Scan(lastLogouts, visited);
+    }
+
     public Map<String, Long> getMonthlyActivityMetric(String userId, YearMonth month) {
-        if (!userSessions.containsKey(userId)) {
-            throw new IllegalArgumentException("No sessions found for user");
-        }
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.begin();
         Map<String, Long> activityByDay = new HashMap<>();
-        userSessions.get(userId).stream()
+        List<Session> sessions = requireSessions(userId).view();
+        sessions.stream()
                 .filter(session -> isSessionInMonth(session, month))
                 .forEach(session -> {
                     String dayKey = session.getLoginTime().toLocalDate().toString();
                     long minutes = ChronoUnit.MINUTES.between(session.getLoginTime(), session.getLogoutTime());
                     activityByDay.put(dayKey, activityByDay.getOrDefault(dayKey, 0L) + minutes);
                 });
+        if (event.shouldCommit()) {
+            ServiceOperationEvent.commit(event, "getMonthlyActivityMetric", userId, sessions.size());
+        }
         return activityByDay;
     }
 
+    /**
+     * Версия месячной статистики пользователя: увеличивается при каждой записи сессии,
+     * начавшейся в указанном месяце. Позволяет не пересчитывать неизменившиеся месяцы.
+     */
+    public long getMonthlyActivityVersion(String userId, YearMonth month) {
+        return requireSessions(userId).getMonthlyVersion(month);
+    }
+
+    private SessionLog requireSessions(String userId) {
+        SessionLog log = userSessions.get(userId);
+        if (log == null) {
+            throw new IllegalArgumentException("No sessions found for user");
+        }
+        return log;
+    }
+
     private boolean isSessionInMonth(Session session, YearMonth month) {
         LocalDateTime start = session.getLoginTime();
         return start.getYear() == month.getYear() && start.getMonth() == month.getMonth();
@@ -78,7 +272,8 @@ public class UserAnalyticsService {
     }
 
     public List<Session> getUserSessions(String userId) {
-        return userSessions.get(userId);
+        SessionLog log = userSessions.get(userId);
+        return log == null ? null : log.view();
     }
 
     public static class User {
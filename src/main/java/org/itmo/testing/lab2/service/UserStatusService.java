@@ -1,6 +1,8 @@
 package org.itmo.testing.lab2.service;
 
-
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public class UserStatusService {
@@ -12,9 +14,17 @@ public class UserStatusService {
     }
 
     public String getUserStatus(String userId) {
-
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.begin();
         long totalActivityTime = userAnalyticsService.getTotalActivityTime(userId);
+        String status = statusFor(totalActivityTime);
+        if (event.shouldCommit()) {
+            ServiceOperationEvent.commit(event, "getUserStatus", userId, 0);
+        }
+        return status;
+    }
 
+    public static String statusFor(long totalActivityTime) {
         if (totalActivityTime < 60) {
             return "Inactive";
         } else if (totalActivityTime < 120) {
@@ -24,8 +34,19 @@ public class UserStatusService {
         }
     }
 
+    /**
+     * Дата самого позднего выхода: сессии не упорядочены по времени, поскольку история
+     * может быть загружена после текущих сессий.
+     */
     public Optional<String> getUserLastSessionDate(String userId) {
-        UserAnalyticsService.Session lastSession = userAnalyticsService.getUserSessions(userId).getLast();
-        return Optional.of(lastSession.getLogoutTime().toLocalDate().toString());
+        List<UserAnalyticsService.Session> sessions = userAnalyticsService.getUserSessions(userId);
+        if (sessions == null) {
+            return Optional.empty();
+        }
+        return sessions.stream()
+                .map(UserAnalyticsService.Session::getLogoutTime)
+                .filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo)
+                .map(logoutTime -> logoutTime.toLocalDate().toString());
     }
 }
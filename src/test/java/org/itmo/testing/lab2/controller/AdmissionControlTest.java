@@ -0,0 +1,127 @@
+package org.itmo.testing.lab2.controller;
+
+import org.itmo.testing.lab2.controller.AdmissionControl.Limits;
+import org.itmo.testing.lab2.controller.AdmissionControl.RouteClass;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    private AdmissionControl admission;
+
+    @BeforeEach
+    void setUp() {
+        admission = new AdmissionControl(Map.of(
+                RouteClass.INGEST, new Limits(1, 0, 0),
+                RouteClass.POINT_READ, new Limits(2, 0, 0),
+                RouteClass.SCAN, new Limits(1, 0, 0)
+        ), 1);
+    }
+
+    // TryEnter:
+    // - within concurrency limit
+    // - over limit with empty queue -> rejected
+    // - permit released after exit
+    @Test
+    @DisplayName("tryEnter: Превышение лимита одновременных запросов")
+    public void testTryEnterRejectsOverLimit() throws InterruptedException {
+        assertTrue(admission.tryEnter(RouteClass.INGEST));
+        assertFalse(admission.tryEnter(RouteClass.INGEST));
+
+        admission.exit(RouteClass.INGEST);
+        assertTrue(admission.tryEnter(RouteClass.INGEST));
+    }
+
+    @Test
+    @DisplayName("tryEnter: Классы маршрутов ограничиваются независимо")
+    public void testRouteClassesAreIndependent() throws InterruptedException {
+        assertTrue(admission.tryEnter(RouteClass.SCAN));
+        assertAll("Проверка независимости лимитов",
+                () -> assertTrue(admission.tryEnter(RouteClass.POINT_READ)),
+                () -> assertTrue(admission.tryEnter(RouteClass.INGEST))
+        );
+    }
+
+    @Test
+    @DisplayName("metrics: Учёт принятых и отклонённых запросов")
+    public void testMetrics() throws InterruptedException {
+        admission.tryEnter(RouteClass.SCAN);
+        admission.tryEnter(RouteClass.SCAN);
+
+        Map<String, Long> scanMetrics = admission.metrics().get("SCAN");
+        assertAll("Проверка метрик",
+                () -> assertEquals(1L, scanMetrics.get("admitted")),
+                () -> assertEquals(1L, scanMetrics.get("rejected")),
+                () -> assertEquals(1L, scanMetrics.get("inFlight")),
+                () -> assertEquals(0L, scanMetrics.get("queued"))
+        );
+    }
+
+    // Saturated INGEST:
+    // - one running request and a full wait queue blocked on worker threads
+    // - further ingest is rejected immediately
+    // - POINT_READ is still admitted
+    @Test
+    @DisplayName("tryEnter: Точечные чтения допускаются при заполненной очереди записи")
+    public void testPointReadAdmittedWhileIngestSaturated() throws Exception {
+        var saturated = new AdmissionControl(Map.of(
+                RouteClass.INGEST, new Limits(1, 2, 10_000),
+                RouteClass.POINT_READ, new Limits(1, 0, 0),
+                RouteClass.SCAN, new Limits(1, 0, 0)
+        ), 1);
+        assertTrue(saturated.tryEnter(RouteClass.INGEST));
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    saturated.tryEnter(RouteClass.INGEST);
+                } catch (InterruptedException ignored) {
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (saturated.metrics().get("INGEST").get("queued") < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        try {
+            assertAll("Проверка приоритета точечных чтений",
+                    () -> assertEquals(2L, saturated.metrics().get("INGEST").get("queued")),
+                    () -> assertFalse(saturated.tryEnter(RouteClass.INGEST)),
+                    () -> assertTrue(saturated.tryEnter(RouteClass.POINT_READ))
+            );
+        } finally {
+            for (Thread waiter : waiters) {
+                waiter.interrupt();
+                waiter.join();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("checkThreadPool: Пул потоков меньше суммы лимитов допуска")
+    public void testCheckThreadPool() {
+        // INGEST 1, POINT_READ 2, SCAN 1 без очередей
+        assertAll("Проверка размера пула",
+                () -> assertEquals(4, admission.maxOccupiedThreads()),
+                () -> assertDoesNotThrow(() -> admission.checkThreadPool(12, 8)),
+                () -> assertThrows(IllegalArgumentException.class, () -> admission.checkThreadPool(11, 8))
+        );
+    }
+
+    @Test
+    @DisplayName("AdmissionControl: Отсутствуют лимиты для класса маршрутов")
+    public void testMissingLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdmissionControl(Map.of(RouteClass.INGEST, new Limits(1, 0, 0)), 1));
+    }
+}
@@ -0,0 +1,49 @@
+package org.itmo.testing.lab2.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecordingManagerTest {
+
+    @TempDir
+    Path directory;
+
+    // Start:
+    // - non-positive duration, age or size -> IllegalArgumentException, nothing left running
+    // - valid limits -> recording saved on stop
+    @ParameterizedTest
+    @CsvSource({"0, 60, 10", "60, -1, 10", "60, 60, -1", "60, 60, 0", "60, 60, 9223372036854775807"})
+    @DisplayName("start: Некорректные ограничения записи")
+    public void testStartRejectsInvalidLimits(long durationSeconds, long maxAgeSeconds, long maxSizeMb) {
+        var manager = new FlightRecordingManager(directory);
+
+        assertThrows(IllegalArgumentException.class, () -> manager.start(
+                Duration.ofSeconds(durationSeconds), Duration.ofSeconds(maxAgeSeconds), maxSizeMb));
+        assertThrows(IllegalStateException.class, manager::stop);
+    }
+
+    @Test
+    @DisplayName("stop: Запись сохраняется в каталог")
+    public void testStartAndStop() throws Exception {
+        var manager = new FlightRecordingManager(directory);
+
+        String name = manager.start(Duration.ofSeconds(60), Duration.ofSeconds(60), 10);
+        assertThrows(IllegalStateException.class,
+                () -> manager.start(Duration.ofSeconds(60), Duration.ofSeconds(60), 10));
+        Path file = manager.stop();
+
+        assertAll("Проверка сохранённой записи",
+                () -> assertEquals(directory.resolve(name + ".jfr"), file),
+                () -> assertTrue(Files.size(file) > 0)
+        );
+    }
+}
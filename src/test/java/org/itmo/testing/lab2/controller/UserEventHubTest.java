@@ -0,0 +1,92 @@
+package org.itmo.testing.lab2.controller;
+
+import io.javalin.http.sse.SseClient;
+import org.itmo.testing.lab2.controller.UserEventHub.ActivityEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class UserEventHubTest {
+
+    // Coalescing:
+    // - changes offered while a send is in progress are merged per user
+    // - the merged change keeps the original previousMinutes, so a tier crossing is still a status event
+    // - changes of users without subscription are not sent
+    @Test
+    @DisplayName("onTotalActivityChanged: Слияние изменений сохраняет исходное значение")
+    public void testCoalescingKeepsOriginalPreviousMinutes() throws InterruptedException {
+        SseClient client = mock(SseClient.class);
+        List<String> events = new CopyOnWriteArrayList<>();
+        List<Object> payloads = new CopyOnWriteArrayList<>();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            events.add(invocation.getArgument(0));
+            payloads.add(invocation.getArgument(1));
+            if (events.size() == 1) {
+                sending.countDown();
+                release.await();
+            }
+            return null;
+        }).when(client).sendEvent(anyString(), any());
+        var hub = new UserEventHub();
+        hub.subscribe(client, List.of("user1"));
+
+        hub.onTotalActivityChanged("user1", 0, 10);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        hub.onTotalActivityChanged("user1", 10, 70);
+        hub.onTotalActivityChanged("user1", 70, 80);
+        hub.onTotalActivityChanged("user2", 0, 100);
+        release.countDown();
+        awaitSize(events, 2);
+
+        assertAll("Проверка отправленных событий",
+                () -> assertEquals(List.of(UserEventHub.ACTIVITY_EVENT, UserEventHub.STATUS_EVENT), events),
+                () -> assertEquals(new ActivityEvent("user1", 10, "Inactive"), payloads.get(0)),
+                () -> assertEquals(new ActivityEvent("user1", 80, "Active"), payloads.get(1))
+        );
+    }
+
+    @Test
+    @DisplayName("onTotalActivityChanged: Подписка на всех пользователей и смена уровня активности")
+    public void testAllUsersSubscriptionReceivesStatusEvent() {
+        SseClient client = mock(SseClient.class);
+        var hub = new UserEventHub();
+        hub.subscribe(client, List.of());
+
+        hub.onTotalActivityChanged("user2", 100, 120);
+
+        verify(client, timeout(5_000)).sendEvent(UserEventHub.STATUS_EVENT,
+                new ActivityEvent("user2", 120, "Highly active"));
+    }
+
+    @Test
+    @DisplayName("onTotalActivityChanged: Изменение в пределах уровня отправляется как activity")
+    public void testSameTierChangeIsActivityEvent() {
+        SseClient client = mock(SseClient.class);
+        var hub = new UserEventHub();
+        hub.subscribe(client, List.of("user1"));
+
+        hub.onTotalActivityChanged("user1", 60, 90);
+
+        verify(client, timeout(5_000)).sendEvent(UserEventHub.ACTIVITY_EVENT, new ActivityEvent("user1", 90, "Active"));
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Даём отправителю время на лишнее событие, если слияние не сработало
+        Thread.sleep(100);
+    }
+}
@@ -6,13 +6,25 @@ import org.itmo.testing.lab2.controller.UserAnalyticsController;
 import org.junit.jupiter.api.*;
 import org.mockito.MockedStatic;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.mockStatic;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -518,4 +530,188 @@ public class UserAnalyticsIntegrationTest {
                 .statusCode(400)
                 .body(containsString("Invalid data: Text '" + month + "'"));
     }
+
+    // MonthlyActivity (ETag):
+    // - ETag returned
+    // - If-None-Match with actual ETag -> 304
+    // - new session in month -> new ETag
+
+    @Test
+    @Order(28)
+    @DisplayName("monthlyActivity: Тест условного запроса (Совпадающий ETag, 304)")
+    void testGetMonthlyActivityNotModified() {
+        var month = YearMonth.now();
+        String etag = given()
+                .queryParam("userId", "user1")
+                .queryParam("month", month.toString())
+                .when()
+                .get("/monthlyActivity")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract()
+                .header("ETag");
+
+        given()
+                .queryParam("userId", "user1")
+                .queryParam("month", month.toString())
+                .header("If-None-Match", etag)
+                .when()
+                .get("/monthlyActivity")
+                .then()
+                .statusCode(304)
+                .header("ETag", equalTo(etag));
+    }
+
+    @Test
+    @Order(29)
+    @DisplayName("monthlyActivity: Тест условного запроса (Новая сессия в месяце, новый ETag)")
+    void testGetMonthlyActivityModifiedAfterSession() {
+        var month = YearMonth.now();
+        String etag = given()
+                .queryParam("userId", "user1")
+                .queryParam("month", month.toString())
+                .when()
+                .get("/monthlyActivity")
+                .then()
+                .statusCode(200)
+                .extract()
+                .header("ETag");
+
+        LocalDateTime login = month.atDay(1).atTime(10, 0);
+        recordSession("user1", login, login.plusMinutes(30));
+
+        given()
+                .queryParam("userId", "user1")
+                .queryParam("month", month.toString())
+                .header("If-None-Match", etag)
+                .when()
+                .get("/monthlyActivity")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(etag)));
+    }
+
+    // RecordSession (idempotency):
+    // - retry with same idempotencyKey is recorded once
+
+    @Test
+    @Order(30)
+    @DisplayName("recordSession: Тест повторной записи сессии (Одинаковый idempotencyKey)")
+    void testRecordSessionIdempotencyKey() {
+        long before = getTotalActivityMinutes("user2");
+        LocalDateTime login = LocalDateTime.now().minusDays(2);
+        for (int i = 0; i < 2; i++) {
+            given()
+                    .queryParam("userId", "user2")
+                    .queryParam("loginTime", login.toString())
+                    .queryParam("logoutTime", login.plusMinutes(30).toString())
+                    .queryParam("idempotencyKey", "retry-1")
+                    .when()
+                    .post("/recordSession")
+                    .then()
+                    .statusCode(200)
+                    .body(equalTo("Session recorded"));
+        }
+
+        Assertions.assertEquals(before + 30, getTotalActivityMinutes("user2"));
+    }
+
+    // RecordSession (content dedup without idempotencyKey):
+    // - retry with the same login/logout is recorded once
+    // - two distinct sessions are both recorded
+
+    @Test
+    @Order(31)
+    @DisplayName("recordSession: Тест повторной записи сессии (Без idempotencyKey, то же содержимое)")
+    void testRecordSessionKeylessRetry() {
+        long before = getTotalActivityMinutes("user2");
+        LocalDateTime login = LocalDateTime.now().minusDays(3);
+        recordSession("user2", login, login.plusMinutes(20));
+        recordSession("user2", login, login.plusMinutes(20));
+
+        Assertions.assertEquals(before + 20, getTotalActivityMinutes("user2"));
+    }
+
+    @Test
+    @Order(32)
+    @DisplayName("recordSession: Тест записи двух разных сессий без idempotencyKey")
+    void testRecordSessionKeylessDistinctSessions() {
+        long before = getTotalActivityMinutes("user2");
+        LocalDateTime login = LocalDateTime.now().minusDays(4);
+        recordSession("user2", login, login.plusMinutes(15));
+        recordSession("user2", login.plusHours(1), login.plusHours(1).plusMinutes(25));
+
+        Assertions.assertEquals(before + 40, getTotalActivityMinutes("user2"));
+    }
+
+    // Events (SSE):
+    // - change within a tier -> activity
+    // - crossing 60 and 120 minutes -> status
+
+    @Test
+    @Order(33)
+    @DisplayName("events: Тест подписки на изменения активности (activity и status)")
+    void testEventsAcrossStatusBoundaries() throws Exception {
+        given()
+                .queryParam("userId", "user-sse")
+                .queryParam("userName", "Eve")
+                .when()
+                .post("/register")
+                .then()
+                .statusCode(200);
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        HttpResponse<Stream<String>> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/events?userId=user-sse")).GET().build(),
+                HttpResponse.BodyHandlers.ofLines());
+        Thread reader = new Thread(() -> response.body()
+                .filter(line -> line.startsWith("event:"))
+                .forEach(line -> events.add(line.substring("event:".length()).trim())));
+        reader.setDaemon(true);
+        reader.start();
+        // Подписка регистрируется после отправки заголовков ответа
+        Thread.sleep(500);
+
+        LocalDateTime login = LocalDateTime.now().minusDays(1);
+        List<String> received = new ArrayList<>();
+        for (long minutes : new long[]{30, 40, 20, 40}) {
+            recordSession("user-sse", login, login.plusMinutes(minutes));
+            login = login.plusHours(2);
+            received.add(events.poll(5, TimeUnit.SECONDS));
+        }
+        response.body().close();
+
+        // 30 -> 70 -> 90 -> 130 минут
+        Assertions.assertEquals(List.of("activity", "status", "activity", "status"), received);
+    }
+
+    // Profiling (lab2.jfr.dir not set):
+    // - start -> 403
+    // - stop -> 403
+
+    @Test
+    @Order(34)
+    @DisplayName("admin/profiling: Тест выключенной записи профиля")
+    void testProfilingDisabledWithoutDirectory() {
+        for (String action : List.of("start", "stop")) {
+            given()
+                    .when()
+                    .post("/admin/profiling/" + action)
+                    .then()
+                    .statusCode(403)
+                    .body(equalTo("Profiling is disabled"));
+        }
+    }
+
+    private long getTotalActivityMinutes(String userId) {
+        String body = given()
+                .queryParam("userId", userId)
+                .when()
+                .get("/totalActivity")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        return Long.parseLong(body.replace("Total activity: ", "").replace(" minutes", ""));
+    }
 }
@@ -0,0 +1,72 @@
+package org.itmo.testing.lab2.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DurationHistogramTest {
+
+    // Buckets:
+    // - exact below 8
+    // - relative error <= 1/16 above
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 7, 8, 15, 60, 119, 120, 1000, 1_000_000, Long.MAX_VALUE})
+    @DisplayName("bucketValue: Относительная ошибка корзины")
+    public void testBucketRelativeError(long minutes) {
+        long value = DurationHistogram.bucketValue(DurationHistogram.bucketIndex(minutes));
+        assertTrue(Math.abs((double) value - minutes) <= minutes / 16.0,
+                () -> minutes + " -> " + value);
+    }
+
+    @Test
+    @DisplayName("percentiles: Медиана и 95-й перцентиль (1..100 минут)")
+    public void testPercentiles() {
+        var histogram = new DurationHistogram();
+        for (long minutes = 1; minutes <= 100; minutes++) {
+            histogram.record(minutes);
+        }
+
+        var percentiles = histogram.percentiles();
+        assertAll("Проверка перцентилей",
+                () -> assertEquals(100, percentiles.count()),
+                () -> assertEquals(50, percentiles.p50(), 50 / 16.0),
+                () -> assertEquals(95, percentiles.p95(), 95 / 16.0)
+        );
+    }
+
+    @Test
+    @DisplayName("percentiles: Диапазон корзин расширяется в обе стороны")
+    public void testRangeGrowsBothWays() {
+        var histogram = new DurationHistogram();
+        var global = new DurationHistogram.Global();
+        for (long minutes : new long[]{60, 600, 30, 5, 6000, 45, 60}) {
+            histogram.record(minutes);
+            global.record(minutes);
+        }
+
+        assertEquals(global.percentiles(), histogram.percentiles());
+    }
+
+    @Test
+    @DisplayName("percentiles: Пустая гистограмма")
+    public void testEmptyPercentiles() {
+        var percentiles = new DurationHistogram.Global().percentiles();
+        assertAll("Проверка пустой гистограммы",
+                () -> assertEquals(0, percentiles.count()),
+                () -> assertEquals(0, percentiles.p50()),
+                () -> assertEquals(0, percentiles.p95())
+        );
+    }
+
+    @Test
+    @DisplayName("percentiles: Отрицательная длительность учитывается как 0")
+    public void testNegativeDuration() {
+        var histogram = new DurationHistogram.Global();
+        histogram.record(-60);
+
+        assertEquals(0, histogram.percentiles().p50());
+    }
+}
@@ -0,0 +1,143 @@
+package org.itmo.testing.lab2.service;
+
+import org.itmo.testing.lab2.service.InactiveUsersCache.LastLogout;
+import org.itmo.testing.lab2.service.InactiveUsersCache.Lookup;
+import org.itmo.testing.lab2.service.InactiveUsersCache.Scan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InactiveUsersCacheTest {
+
+    private static final LocalDateTime BUCKET_START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    // Cache hit:
+    // - the same days value within one bucket scans once
+    // - a user crossing the threshold inside the bucket appears without a rescan
+    // - the scanned count is reported for the build and 0 for the hit
+    @Test
+    @DisplayName("get: Повторный запрос в пределах корзины обслуживается из кэша")
+    public void testSameBucketScansOnce() {
+        var cache = new InactiveUsersCache(Duration.ofMinutes(1), 8);
+        var scans = new AtomicInteger();
+        var users = List.of(
+                new LastLogout("old", BUCKET_START.minusDays(30)),
+                new LastLogout("edge", BUCKET_START.minusDays(8).plusSeconds(30)));
+
+        Lookup first = cache.get(7, BUCKET_START.plusSeconds(10), bound -> {
+            scans.incrementAndGet();
+            return new Scan(users.stream().filter(u -> !u.logoutTime().isAfter(bound)).toList(), users.size());
+        });
+        Lookup second = cache.get(7, BUCKET_START.plusSeconds(40), bound -> {
+            scans.incrementAndGet();
+            return new Scan(users, users.size());
+        });
+
+        assertAll("Проверка кэша",
+                () -> assertEquals(1, scans.get()),
+                () -> assertEquals(Set.of("old"), new HashSet<>(first.users())),
+                () -> assertEquals(Set.of("old", "edge"), new HashSet<>(second.users())),
+                () -> assertEquals(2, first.scanned()),
+                () -> assertEquals(0, second.scanned())
+        );
+    }
+
+    @Test
+    @DisplayName("onSessionAppended: Новая сессия убирает пользователя из закэшированного результата")
+    public void testSessionAppendedUpdatesEntry() {
+        var cache = new InactiveUsersCache(Duration.ofMinutes(1), 8);
+        cache.get(7, BUCKET_START, bound -> new Scan(List.of(new LastLogout("user1", BUCKET_START.minusDays(30))), 1));
+
+        cache.onSessionAppended("user1", BUCKET_START);
+        cache.onSessionAppended("user2", BUCKET_START.minusDays(10));
+
+        Lookup result = cache.get(7, BUCKET_START.plusSeconds(5), bound -> fail("Ожидался ответ из кэша"));
+        assertEquals(List.of("user2"), result.users());
+    }
+
+    @Test
+    @DisplayName("get: Новая корзина приводит к повторному обходу")
+    public void testNextBucketRescans() {
+        var cache = new InactiveUsersCache(Duration.ofMinutes(1), 8);
+        var scans = new AtomicInteger();
+
+        cache.get(7, BUCKET_START, bound -> {
+            scans.incrementAndGet();
+            return new Scan(List.of(), 0);
+        });
+        cache.get(7, BUCKET_START.plusMinutes(1), bound -> {
+            scans.incrementAndGet();
+            return new Scan(List.of(), 0);
+        });
+
+        assertEquals(2, scans.get());
+    }
+
+    @Test
+    @DisplayName("get: Выключенный кэш обходит пользователей при каждом запросе")
+    public void testDisabledCacheAlwaysScans() {
+        var cache = new InactiveUsersCache(Duration.ofMinutes(1), 0);
+        var scans = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Lookup lookup = cache.get(7, BUCKET_START, bound -> {
+                scans.incrementAndGet();
+                return new Scan(List.of(new LastLogout("user1", BUCKET_START.minusDays(30))), 1);
+            });
+            assertEquals(new Lookup(List.of("user1"), 1), lookup);
+        }
+        assertEquals(3, scans.get());
+    }
+
+    // Concurrent rebuild:
+    // - a session appended while the entry is being built does not wait for the scan
+    // - the appended value wins over the scan result
+    @Test
+    @DisplayName("onSessionAppended: Запись сессии не ждёт построения записи кэша")
+    public void testSessionAppendedDuringBuildDoesNotBlock() throws Exception {
+        var cache = new InactiveUsersCache(Duration.ofMinutes(1), 8);
+        var scanning = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        LocalDateTime old = BUCKET_START.minusDays(30);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        CompletableFuture<Lookup> result = CompletableFuture.supplyAsync(() ->
+                cache.get(7, BUCKET_START, bound -> {
+                    scanning.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new Scan(List.of(new LastLogout("user1", old), new LastLogout("user2", old)), 2);
+                }), executor);
+        try {
+            assertTrue(scanning.await(5, TimeUnit.SECONDS));
+            try {
+                CompletableFuture.runAsync(() -> {
+                    cache.onSessionAppended("user1", BUCKET_START);
+                    cache.onSessionAppended("user3", old);
+                }, executor).get(5, TimeUnit.SECONDS);
+            } finally {
+                release.countDown();
+            }
+
+            assertEquals(Set.of("user2", "user3"), new HashSet<>(result.get(5, TimeUnit.SECONDS).users()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
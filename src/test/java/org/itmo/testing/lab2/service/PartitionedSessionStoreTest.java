@@ -0,0 +1,71 @@
+package org.itmo.testing.lab2.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedSessionStoreTest {
+
+    // Scan:
+    // - sequential (threshold above size)
+    // - parallel (threshold 0)
+    // Both must return the same users
+    @ParameterizedTest
+    @ValueSource(ints = {0, Integer.MAX_VALUE})
+    @DisplayName("scan: Обход всех пользователей (параллельный и последовательный)")
+    public void testScanVisitsEveryUser(int threshold) {
+        var store = new PartitionedSessionStore(4, threshold);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String userId = "user" + i;
+            append(store.getOrCreate(userId));
+            if (i % 3 == 0) {
+                expected.add(userId);
+            }
+        }
+
+        List<String> result = store.scan((userId, sessions) ->
+                Integer.parseInt(userId.substring(4)) % 3 == 0 ? userId : null);
+
+        assertAll("Проверка результата обхода",
+                () -> assertEquals(expected.size(), result.size()),
+                () -> assertEquals(expected, new HashSet<>(result))
+        );
+    }
+
+    @Test
+    @DisplayName("getOrCreate: Повторное обращение возвращает тот же журнал")
+    public void testGetOrCreateReturnsSameList() {
+        var store = new PartitionedSessionStore(2, 0);
+        var sessions = store.getOrCreate("user1");
+        append(sessions);
+
+        assertAll("Проверка журнала сессий",
+                () -> assertSame(sessions, store.getOrCreate("user1")),
+                () -> assertSame(sessions, store.get("user1")),
+                () -> assertTrue(store.containsKey("user1")),
+                () -> assertEquals(1, store.size())
+        );
+    }
+
+    @Test
+    @DisplayName("PartitionedSessionStore: Некорректный параллелизм")
+    public void testNonPositiveParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedSessionStore(0, 0));
+    }
+
+    private static void append(SessionLog log) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (log) {
+            log.append(new UserAnalyticsService.Session(now.minusHours(1), now), 1, 60);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.itmo.testing.lab2.service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceOperationEventTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("ServiceOperationEvent: События вызовов сервиса попадают во включённую запись")
+    public void testEventsAreRecorded() throws IOException {
+        var service = new UserAnalyticsService();
+        service.registerUser("user1", "Alice");
+        LocalDateTime now = LocalDateTime.now();
+
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ServiceOperationEvent.class);
+            recording.start();
+            service.recordSession("user1", now.minusHours(1), now);
+            service.getTotalActivityTime("user1");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("org.itmo.testing.lab2.ServiceOperation"))
+                .toList();
+        assertAll("Проверка событий",
+                () -> assertEquals(2, events.size()),
+                () -> assertEquals("recordSession", events.get(0).getString("operation")),
+                () -> assertEquals("getTotalActivityTime", events.get(1).getString("operation")),
+                () -> assertEquals("user1", events.get(1).getString("userId"))
+        );
+    }
+
+    @Test
+    @DisplayName("ServiceOperationEvent: Событие выключено по умолчанию")
+    public void testEventIsDisabledByDefault() {
+        assertFalse(jdk.jfr.EventType.getEventType(ServiceOperationEvent.class).isEnabled());
+    }
+}
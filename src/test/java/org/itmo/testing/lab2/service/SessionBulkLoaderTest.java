@@ -0,0 +1,144 @@
+package org.itmo.testing.lab2.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionBulkLoaderTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @TempDir
+    Path directory;
+
+    // Load:
+    // - CSV with header, CRLF and malformed lines
+    // - binary, unknown users skipped
+    // - file order preserved per user
+    @Test
+    @DisplayName("load: Загрузка CSV (заголовок, CRLF, некорректные строки)")
+    public void testLoadCsv() throws IOException {
+        Path file = directory.resolve("sessions.csv");
+        Files.writeString(file, "userId,loginTime,logoutTime\r\n"
+                + "user1," + START + "," + START.plusMinutes(30) + "\r\n"
+                + "user2," + START + ":15.5," + START.plusHours(2) + "\n"
+                + "user1," + START.plusDays(1) + "," + START.plusDays(1).plusMinutes(45) + "\n"
+                + "broken line\n"
+                + "user2,2024-13-01T00:00,2024-01-01T00:00\n");
+        var service = new UserAnalyticsService();
+
+        var result = new SessionBulkLoader(service, 2).load(file, SessionBulkLoader.Format.CSV, true);
+
+        assertAll("Проверка загрузки CSV",
+                () -> assertEquals(3, result.loaded()),
+                () -> assertEquals(2, result.malformed()),
+                () -> assertEquals(75, service.getTotalActivityTime("user1")),
+                () -> assertEquals(START.plusDays(1), service.getUserSessions("user1").get(1).getLoginTime()),
+                () -> assertEquals(START.withSecond(15).withNano(500_000_000),
+                        service.getUserSessions("user2").get(0).getLoginTime()),
+                () -> assertNotNull(service.getUser("user1"))
+        );
+    }
+
+    @Test
+    @DisplayName("load: Загрузка бинарного файла (незарегистрированные пользователи пропускаются)")
+    public void testLoadBinary() throws IOException {
+        Path file = directory.resolve("sessions.bin");
+        try (var writer = new BinarySessionWriter(file)) {
+            for (int i = 0; i < 10_000; i++) {
+                LocalDateTime login = START.plusMinutes(i);
+                writer.write("user" + (i % 10), login, login.plusMinutes(10));
+            }
+        }
+        var service = new UserAnalyticsService();
+        service.registerUser("user3", "Carol");
+
+        var result = new SessionBulkLoader(service, 4).load(file, SessionBulkLoader.Format.BINARY, false);
+
+        var sessions = service.getUserSessions("user3");
+        assertAll("Проверка загрузки бинарного файла",
+                () -> assertEquals(1_000, result.loaded()),
+                () -> assertEquals(9_000, result.skippedUnknownUser()),
+                () -> assertEquals(10_000, service.getTotalActivityTime("user3")),
+                () -> assertEquals(START.plusMinutes(9_993), sessions.get(sessions.size() - 1).getLoginTime()),
+                () -> assertNull(service.getUserSessions("user4"))
+        );
+    }
+
+    @Test
+    @DisplayName("load: Файл не в бинарном формате")
+    public void testLoadBinaryWrongFormat() throws IOException {
+        Path file = directory.resolve("sessions.bin");
+        Files.writeString(file, "user1,2024-01-01T10:00,2024-01-01T11:00\n");
+
+        assertThrows(IOException.class, () -> new SessionBulkLoader(new UserAnalyticsService(), 1)
+                .load(file, SessionBulkLoader.Format.BINARY, true));
+    }
+
+    // Corrupt binary files:
+    // - negative block length
+    // - block length past the end of the file
+    // - truncated record inside a block
+    @Test
+    @DisplayName("load: Бинарный файл с отрицательной длиной блока")
+    public void testLoadBinaryNegativeBlockLength() throws IOException {
+        Path file = directory.resolve("negative.bin");
+        Files.write(file, ByteBuffer.allocate(12).putInt(BinarySessionWriter.MAGIC).putInt(-8).putInt(0).array());
+
+        assertThrows(IOException.class, () -> new SessionBulkLoader(new UserAnalyticsService(), 1)
+                .load(file, SessionBulkLoader.Format.BINARY, true));
+    }
+
+    @Test
+    @DisplayName("load: Бинарный файл с блоком за пределами файла")
+    public void testLoadBinaryBlockPastEnd() throws IOException {
+        Path file = directory.resolve("overflow.bin");
+        Files.write(file, ByteBuffer.allocate(12).putInt(BinarySessionWriter.MAGIC).putInt(Integer.MAX_VALUE).putInt(1)
+                .array());
+
+        assertThrows(IOException.class, () -> new SessionBulkLoader(new UserAnalyticsService(), 1)
+                .load(file, SessionBulkLoader.Format.BINARY, true));
+    }
+
+    @Test
+    @DisplayName("load: Бинарный файл с обрезанной записью внутри блока")
+    public void testLoadBinaryTruncatedRecord() throws IOException {
+        Path file = directory.resolve("truncated.bin");
+        // Блок объявляет две записи, но содержит только длину идентификатора и сам идентификатор
+        Files.write(file, ByteBuffer.allocate(4 + 8 + 7).putInt(BinarySessionWriter.MAGIC).putInt(7).putInt(2)
+                .putShort((short) 5).put("user1".getBytes()).array());
+
+        assertThrows(IOException.class, () -> new SessionBulkLoader(new UserAnalyticsService(), 1)
+                .load(file, SessionBulkLoader.Format.BINARY, true));
+    }
+
+    // Backfill:
+    // - history older than the live session does not make the user inactive
+    @Test
+    @DisplayName("load: Загрузка истории после текущей сессии")
+    public void testLoadBackfillAfterLiveSession() throws IOException {
+        var service = new UserAnalyticsService();
+        service.registerUser("user1", "Alice");
+        LocalDateTime now = LocalDateTime.now();
+        service.recordSession("user1", now.minusHours(1), now);
+        Path file = directory.resolve("history.csv");
+        Files.writeString(file, "user1," + now.minusDays(100) + "," + now.minusDays(100).plusMinutes(30) + "\n");
+
+        new SessionBulkLoader(service, 1).load(file, SessionBulkLoader.Format.CSV, false);
+
+        assertAll("Проверка неактивных пользователей после загрузки истории",
+                () -> assertEquals(List.of(), service.findInactiveUsers(30)),
+                () -> assertEquals(now.toLocalDate().toString(),
+                        new UserStatusService(service).getUserLastSessionDate("user1").orElseThrow())
+        );
+    }
+}
@@ -0,0 +1,122 @@
+package org.itmo.testing.lab2.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionDeduplicatorTest {
+
+    // MightContain:
+    // - new hash -> false
+    // - added hash -> true
+    // - forgotten after two windows
+    @Test
+    @DisplayName("mightContain: Новая сессия отсутствует в фильтре")
+    public void testNewHashIsAbsent() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofMinutes(10));
+        var now = LocalDateTime.now();
+
+        assertFalse(deduplicator.mightContain(SessionDeduplicator.contentHash("user1", now.minusHours(1), now)));
+    }
+
+    @Test
+    @DisplayName("mightContain: Записанная сессия присутствует в фильтре")
+    public void testAddedHashIsPresent() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofMinutes(10));
+        var now = LocalDateTime.now();
+        long hash = SessionDeduplicator.contentHash("user1", now.minusHours(1), now);
+        deduplicator.add(hash, 1);
+
+        assertAll("Проверка фильтра",
+                () -> assertTrue(deduplicator.mightContain(hash)),
+                () -> assertTrue(deduplicator.mightContain(
+                        SessionDeduplicator.contentHash("user1", now.minusHours(1), now)))
+        );
+    }
+
+    @Test
+    @DisplayName("mightContain: Сессия забывается после двух окон")
+    public void testHashIsForgottenAfterTwoWindows() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofNanos(1));
+        long hash = SessionDeduplicator.keyHash("user1", "key-1");
+        deduplicator.add(hash, 1);
+
+        assertTrue(deduplicator.mightContain(hash));
+        assertFalse(deduplicator.mightContain(hash));
+    }
+
+    // ContainsKey:
+    // - added key of the same user -> true
+    // - same key of another user -> false
+    // - forgotten after two windows
+    @Test
+    @DisplayName("containsKey: Ключ идемпотентности запоминается для пользователя")
+    public void testContainsKey() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofMinutes(10));
+        deduplicator.addKey("user1", "key-1", 1);
+
+        assertAll("Проверка ключей",
+                () -> assertTrue(deduplicator.containsKey("user1", "key-1")),
+                () -> assertFalse(deduplicator.containsKey("user2", "key-1")),
+                () -> assertFalse(deduplicator.containsKey("user1", "key-2"))
+        );
+    }
+
+    @Test
+    @DisplayName("containsKey: Ключ забывается после двух окон")
+    public void testKeyIsForgottenAfterTwoWindows() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofNanos(1));
+        deduplicator.addKey("user1", "key-1", 1);
+
+        assertTrue(deduplicator.containsKey("user1", "key-1"));
+        assertFalse(deduplicator.containsKey("user1", "key-1"));
+    }
+
+    // RememberedSince:
+    // - nothing added -> Long.MAX_VALUE
+    // - smallest added sequence while remembered
+    // - reset once both generations are rotated out
+    @Test
+    @DisplayName("rememberedSince: Наименьший номер записи, которую помнит фильтр")
+    public void testRememberedSince() {
+        var deduplicator = new SessionDeduplicator(16, 4, Duration.ofNanos(1));
+        assertEquals(Long.MAX_VALUE, deduplicator.rememberedSince());
+
+        deduplicator.add(SessionDeduplicator.keyHash("user1", "key-1"), 7);
+        deduplicator.add(SessionDeduplicator.keyHash("user1", "key-2"), 9);
+        assertEquals(7, deduplicator.rememberedSince());
+
+        deduplicator.mightContain(0);
+        assertEquals(7, deduplicator.rememberedSince());
+        deduplicator.mightContain(0);
+        assertEquals(Long.MAX_VALUE, deduplicator.rememberedSince());
+    }
+
+    @Test
+    @DisplayName("forExpectedInserts: Размер фильтра по ожидаемому числу записей")
+    public void testForExpectedInserts() {
+        var deduplicator = SessionDeduplicator.forExpectedInserts(10_000_000, 0.01, Duration.ofMinutes(10));
+        // 10M записей при 1% ложных срабатываний требуют около 96M бит
+        assertAll("Проверка размера фильтра",
+                () -> assertEquals(1 << 27, deduplicator.bitCount()),
+                () -> assertTrue(deduplicator.hashFunctions() >= 7 && deduplicator.hashFunctions() <= 16)
+        );
+    }
+
+    @Test
+    @DisplayName("forExpectedInserts: Некорректная доля ложных срабатываний")
+    public void testForExpectedInsertsInvalidRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SessionDeduplicator.forExpectedInserts(1000, 1.5, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    @DisplayName("SessionDeduplicator: Некорректные параметры фильтра")
+    public void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionDeduplicator(2, 4, Duration.ofMinutes(1)));
+    }
+}
@@ -0,0 +1,122 @@
+package org.itmo.testing.lab2.service;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionLogTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    // ViewAt:
+    // - sessions appended after the epoch are invisible
+    // - sessions appended up to the epoch are visible in order
+    @Test
+    @DisplayName("viewAt: Сессии, записанные после эпохи, не видны")
+    public void testViewAtHidesLaterSessions() {
+        var log = new SessionLog();
+        for (int i = 0; i < 10; i++) {
+            append(log, i + 1, START.plusHours(i));
+        }
+
+        List<Session> snapshot = log.viewAt(4);
+        append(log, 11, START.plusDays(1));
+
+        assertAll("Проверка снимка на момент эпохи",
+                () -> assertEquals(4, snapshot.size()),
+                () -> assertEquals(START.plusHours(3), snapshot.get(3).getLoginTime()),
+                () -> assertEquals(4, log.viewAt(4).size()),
+                () -> assertEquals(11, log.viewAt(11).size()),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(4))
+        );
+    }
+
+    // View stability:
+    // - the first segment grows 1 -> 2 -> ... -> 64 by copying, later segments are added
+    // - views taken before each copy keep their size and contents
+    @Test
+    @DisplayName("view: Представление не меняется при копировании каталога сегментов")
+    public void testViewStableAcrossDirectoryCopy() {
+        var log = new SessionLog();
+        List<List<Session>> views = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            append(log, i + 1, START.plusHours(i));
+            views.add(log.view());
+        }
+
+        for (int n = 0; n < views.size(); n++) {
+            List<Session> view = views.get(n);
+            assertEquals(n + 1, view.size());
+            for (int i = 0; i <= n; i++) {
+                assertEquals(START.plusHours(i), view.get(i).getLoginTime());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("getMonthlyVersion: Версии первого и следующих месяцев")
+    public void testMonthlyVersions() {
+        var log = new SessionLog();
+        append(log, 1, START);
+        append(log, 2, START.plusMonths(1));
+        append(log, 3, START.plusDays(1));
+
+        assertAll("Проверка версий месяцев",
+                () -> assertEquals(2, log.getMonthlyVersion(YearMonth.from(START))),
+                () -> assertEquals(1, log.getMonthlyVersion(YearMonth.from(START.plusMonths(1)))),
+                () -> assertEquals(0, log.getMonthlyVersion(YearMonth.from(START.minusMonths(1))))
+        );
+    }
+
+    // LastLogoutTime:
+    // - maximum logout, not the last appended session (backfilled history)
+    // - at an epoch before the latest session -> maximum among visible sessions
+    @Test
+    @DisplayName("getLastLogoutTimeAt: Самый поздний выход с учётом загруженной истории")
+    public void testLastLogoutTime() {
+        var log = new SessionLog();
+        assertNull(log.getLastLogoutTime());
+        append(log, 1, START);
+        append(log, 2, START.minusDays(100));
+        append(log, 3, START.plusDays(1));
+
+        assertAll("Проверка самого позднего выхода",
+                () -> assertEquals(START.plusDays(1).plusMinutes(30), log.getLastLogoutTime()),
+                () -> assertEquals(START.plusMinutes(30), log.getLastLogoutTimeAt(2)),
+                () -> assertNull(log.getLastLogoutTimeAt(0))
+        );
+    }
+
+    // AnyRecordedSince:
+    // - match at or after the sequence bound -> true
+    // - match only before the bound -> false
+    @Test
+    @DisplayName("anyRecordedSince: Поиск ограничен записями не старше номера")
+    public void testAnyRecordedSince() {
+        var log = new SessionLog();
+        for (int i = 0; i < 100; i++) {
+            append(log, i + 1, START.plusHours(i));
+        }
+
+        synchronized (log) {
+            assertAll("Проверка поиска по номеру записи",
+                    () -> assertTrue(log.anyRecordedSince(50, s -> s.getLoginTime().equals(START.plusHours(49)))),
+                    () -> assertFalse(log.anyRecordedSince(51, s -> s.getLoginTime().equals(START.plusHours(49)))),
+                    () -> assertFalse(log.anyRecordedSince(1, s -> false))
+            );
+        }
+    }
+
+    private static void append(SessionLog log, long sequence, LocalDateTime login) {
+        synchronized (log) {
+            log.append(new Session(login, login.plusMinutes(30)), sequence, 30);
+        }
+    }
+}
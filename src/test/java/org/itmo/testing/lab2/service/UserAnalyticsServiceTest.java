@@ -0,0 +1,127 @@
+package org.itmo.testing.lab2.service;
+
+import org.itmo.testing.lab2.service.UserAnalyticsService.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserAnalyticsServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private UserAnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UserAnalyticsService();
+        service.registerUser("user1", "Alice");
+    }
+
+    // GetTotalActivityTime (running total):
+    // - sum of single and bulk recorded sessions
+    // - duplicates are not counted
+    // - listeners receive previous and new totals
+    @Test
+    @DisplayName("getTotalActivityTime: Сумма поддерживается при записи сессий")
+    public void testRunningTotal() {
+        List<long[]> changes = new CopyOnWriteArrayList<>();
+        service.addActivityListener((userId, previous, total) -> changes.add(new long[]{previous, total}));
+
+        service.recordSession("user1", START, START.plusMinutes(30));
+        service.recordSession("user1", START.plusHours(1), START.plusHours(1).plusMinutes(45), "key-1");
+        service.recordSession("user1", START.plusHours(2), START.plusHours(2).plusMinutes(90), "key-1");
+        service.bulkRecordSessions("user1", List.of(
+                new Session(START.minusDays(2), START.minusDays(2).plusMinutes(10)),
+                new Session(START.minusDays(1), START.minusDays(1).plusMinutes(20))), false);
+
+        assertAll("Проверка суммарной активности",
+                () -> assertEquals(105, service.getTotalActivityTime("user1")),
+                () -> assertEquals(3, changes.size()),
+                () -> assertArrayEquals(new long[]{0, 30}, changes.get(0)),
+                () -> assertArrayEquals(new long[]{30, 75}, changes.get(1)),
+                () -> assertArrayEquals(new long[]{75, 105}, changes.get(2))
+        );
+    }
+
+    // RecordSession (deduplication):
+    // - keyless retry of a session recorded by the 3-arg method is not recorded
+    // - keyless retry of a session recorded with a key is not recorded
+    // - the same key with other content is not recorded
+    @Test
+    @DisplayName("recordSession: Повтор без ключа после записи без ключа и с ключом")
+    public void testKeylessRetryIsDeduplicated() {
+        service.recordSession("user1", START, START.plusMinutes(30));
+        boolean plainRetry = service.recordSession("user1", START, START.plusMinutes(30), null);
+        boolean keyed = service.recordSession("user1", START.plusHours(1), START.plusHours(2), "key-1");
+        boolean keylessRetry = service.recordSession("user1", START.plusHours(1), START.plusHours(2), null);
+        boolean keyRetry = service.recordSession("user1", START.plusHours(3), START.plusHours(4), "key-1");
+
+        assertAll("Проверка дедупликации",
+                () -> assertFalse(plainRetry),
+                () -> assertTrue(keyed),
+                () -> assertFalse(keylessRetry),
+                () -> assertFalse(keyRetry),
+                () -> assertEquals(90, service.getTotalActivityTime("user1"))
+        );
+    }
+
+    @Test
+    @DisplayName("getTotalActivityTime: Пользователь без сессий")
+    public void testRunningTotalNoSessions() {
+        assertThrows(IllegalArgumentException.class, () -> service.getTotalActivityTime("user1"));
+    }
+
+    // FindInactiveUsers (cache under ingest):
+    // - writers record sessions while scans rebuild and read the cached result
+    // - after the writers finish, the cached result matches the recorded sessions
+    @Test
+    @DisplayName("findInactiveUsers: Запись сессий во время обходов")
+    public void testFindInactiveUsersDuringIngest() throws Exception {
+        var concurrent = new UserAnalyticsService(4, 0);
+        LocalDateTime now = LocalDateTime.now();
+        int users = 2_000;
+        for (int i = 0; i < users; i++) {
+            concurrent.registerUser("user" + i, "user" + i);
+            concurrent.recordSession("user" + i, now.minusDays(60), now.minusDays(60).plusMinutes(30));
+        }
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writes = new CopyOnWriteArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                int writer = w;
+                writes.add(writers.submit(() -> {
+                    // Каждый второй пользователь становится активным
+                    for (int i = writer * 2; i < users; i += 8) {
+                        concurrent.recordSession("user" + i, now.minusHours(1), now);
+                    }
+                }));
+            }
+            for (int days = 0; days < 50; days++) {
+                concurrent.findInactiveUsers(30 + days % 3);
+            }
+            for (Future<?> write : writes) {
+                write.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdown();
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 1; i < users; i += 2) {
+            expected.add("user" + i);
+        }
+        assertEquals(expected, new HashSet<>(concurrent.findInactiveUsers(30)));
+    }
+}